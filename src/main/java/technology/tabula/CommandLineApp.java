@@ -5,8 +5,15 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -24,6 +31,7 @@ import technology.tabula.extractors.SpreadsheetExtractionAlgorithm;
 import technology.tabula.writers.CSVWriter;
 import technology.tabula.writers.JSONWriter;
 import technology.tabula.writers.TSVWriter;
+import technology.tabula.writers.TableAppender;
 import technology.tabula.writers.Writer;
 
 
@@ -43,6 +51,8 @@ public class CommandLineApp {
     private List<Integer> pages;
     private OutputFormat outputFormat;
     private String password;
+    private int threads;
+    private RulingIngestionPolicy rulingPolicy;
     private TableExtractor tableExtractor;
 
     public CommandLineApp(Appendable defaultOutput, CommandLine line) throws ParseException {
@@ -51,6 +61,8 @@ public class CommandLineApp {
         this.pages = CommandLineApp.whichPages(line);
         this.outputFormat = CommandLineApp.whichOutputFormat(line);
         this.tableExtractor = CommandLineApp.createExtractor(line);
+        this.threads = CommandLineApp.whichThreads(line);
+        this.rulingPolicy = CommandLineApp.whichRulingPolicy(line);
 
         if (line.hasOption('s')) {
             this.password = line.getOptionValue('s');
@@ -112,16 +124,48 @@ public class CommandLineApp {
                 return name.endsWith(".pdf");
             }
         });
+        if (pdfs == null) {
+            throw new ParseException("Cannot read directory " + pdfDirectory);
+        }
+
+        // in batch mode the threads go to documents, each of them extracted one page at a time.
+        // a document that fails is reported at the end instead of aborting the whole batch
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, pdfs.length)));
+        List<String> failures = new ArrayList<>();
+        try {
+            List<Future<?>> results = new ArrayList<>(pdfs.length);
+            for (final File pdfFile : pdfs) {
+                results.add(executor.submit(() -> {
+                    extractFileInto(pdfFile, new File(getOutputFilename(pdfFile)), 1);
+                    return null;
+                }));
+            }
+
+            for (int i = 0; i < pdfs.length; i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    failures.add(pdfs[i] + ": " + String.valueOf(e.getCause()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParseException("Interrupted while extracting " + pdfDirectory);
+        } finally {
+            executor.shutdownNow();
+        }
 
-        for (File pdfFile : pdfs) {
-            File outputFile = new File(getOutputFilename(pdfFile));
-            extractFileInto(pdfFile, outputFile);
+        if (!failures.isEmpty()) {
+            for (String failure : failures) {
+                System.err.println("Error: " + failure);
+            }
+            throw new ParseException(String.format("%d of %d files could not be extracted", failures.size(), pdfs.length));
         }
     }
 
     public void extractFileTables(CommandLine line, File pdfFile) throws ParseException {
         if (!line.hasOption('o')) {
-            extractFile(pdfFile, this.defaultOutput);
+            extractFile(pdfFile, this.defaultOutput, threads);
             return;
         }
 
@@ -130,13 +174,30 @@ public class CommandLineApp {
     }
 
     public void extractFileInto(File pdfFile, File outputFile) throws ParseException {
+        extractFileInto(pdfFile, outputFile, threads);
+    }
+
+    private void extractFileInto(File pdfFile, File outputFile, int pageThreads) throws ParseException {
+        // write into a temporary file next to the output and move it into place once the
+        // extraction is complete, so that nobody ever reads a partially written file
+        File absoluteOutputFile = outputFile.getAbsoluteFile();
+        File tempFile;
+        try {
+            tempFile = File.createTempFile("." + absoluteOutputFile.getName() + ".", ".tmp", absoluteOutputFile.getParentFile());
+        } catch (IOException e) {
+            throw new ParseException("Cannot create file " + outputFile);
+        }
+
+        boolean moved = false;
         BufferedWriter bufferedWriter = null;
         try {
-            FileWriter fileWriter = new FileWriter(outputFile.getAbsoluteFile());
+            FileWriter fileWriter = new FileWriter(tempFile);
             bufferedWriter = new BufferedWriter(fileWriter);
 
-            outputFile.createNewFile();
-            extractFile(pdfFile, bufferedWriter);
+            extractFile(pdfFile, bufferedWriter, pageThreads);
+            bufferedWriter.close();
+            moveAtomically(tempFile, absoluteOutputFile);
+            moved = true;
         } catch (IOException e) {
             throw new ParseException("Cannot create file " + outputFile);
         } finally {
@@ -147,43 +208,51 @@ public class CommandLineApp {
                     System.out.println("Error in closing the BufferedWriter" + e);
                 }
             }
+            if (!moved) {
+                tempFile.delete();
+            }
         }
     }
 
-    private void extractFile(File pdfFile, Appendable outFile) throws ParseException {
-        PDDocument pdfDocument = null;
+    private static void moveAtomically(File source, File target) throws IOException {
         try {
-            pdfDocument = this.password == null ? PDDocument.load(pdfFile) : PDDocument.load(pdfFile, this.password);
-            PageIterator pageIterator = getPageIterator(pdfDocument);
-            List<Table> tables = new ArrayList<>();
-
-            while (pageIterator.hasNext()) {
-                Page page = pageIterator.next();
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-                if (tableExtractor.verticalRulingPositions != null) {
-                    for (Float verticalRulingPosition : tableExtractor.verticalRulingPositions) {
-                        page.addRuling(new Ruling(0, verticalRulingPosition, 0.0f, (float) page.getHeight()));
+    private void extractFile(File pdfFile, Appendable outFile, int pageThreads) throws ParseException {
+        PDDocument pdfDocument = null;
+        try {
+            pdfDocument = loadDocument(pdfFile);
+            // tables are written as soon as their page is done, so only a few pages are held in memory at a time
+            final TableAppender appender = openWriter(outFile);
+
+            if (pageThreads > 1) {
+                ObjectExtractor extractor = new ObjectExtractor(pdfDocument, rulingPolicy);
+                Iterable<Integer> pageNumbers = (pages == null) ?
+                        Utils.range(1, pdfDocument.getNumberOfPages() + 1) :
+                        pages;
+                extractor.extract(pageNumbers, pageThreads, () -> loadDocument(pdfFile), this::extractPageTables, pageTables -> {
+                    for (Table table : pageTables) {
+                        appender.append(table);
                     }
-                }
-
-                if (pageAreas != null) {
-                    for (Pair<Integer, Rectangle> areaPair : pageAreas) {
-                        Rectangle area = areaPair.getRight();
-                        if (areaPair.getLeft() == RELATIVE_AREA_CALCULATION_MODE) {
-                            area = new Rectangle((float) (area.getTop() / 100 * page.getHeight()),
-                                    (float) (area.getLeft() / 100 * page.getWidth()), (float) (area.getWidth() / 100 * page.getWidth()),
-                                    (float) (area.getHeight() / 100 * page.getHeight()));
-                        }
-                        tables.addAll(tableExtractor.extractTables(page.getArea(area)));
+                });
+            } else {
+                PageIterator pageIterator = getPageIterator(pdfDocument);
+                while (pageIterator.hasNext()) {
+                    for (Table table : extractPageTables(pageIterator.next())) {
+                        appender.append(table);
                     }
-                } else {
-                    tables.addAll(tableExtractor.extractTables(page));
                 }
             }
-            writeTables(tables, outFile);
+            appender.close();
         } catch (IOException e) {
             throw new ParseException(e.getMessage());
         } finally {
+            // the detector holds on to the renderer of the document it was last used on
+            tableExtractor.releaseDetector();
             try {
                 if (pdfDocument != null) {
                     pdfDocument.close();
@@ -194,8 +263,37 @@ public class CommandLineApp {
         }
     }
 
+    private PDDocument loadDocument(File pdfFile) throws IOException {
+        return this.password == null ? PDDocument.load(pdfFile) : PDDocument.load(pdfFile, this.password);
+    }
+
+    private List<Table> extractPageTables(Page page) {
+        List<Table> tables = new ArrayList<>();
+
+        if (tableExtractor.verticalRulingPositions != null) {
+            for (Float verticalRulingPosition : tableExtractor.verticalRulingPositions) {
+                page.addRuling(new Ruling(0, verticalRulingPosition, 0.0f, (float) page.getHeight()));
+            }
+        }
+
+        if (pageAreas != null) {
+            for (Pair<Integer, Rectangle> areaPair : pageAreas) {
+                Rectangle area = areaPair.getRight();
+                if (areaPair.getLeft() == RELATIVE_AREA_CALCULATION_MODE) {
+                    area = new Rectangle((float) (area.getTop() / 100 * page.getHeight()),
+                            (float) (area.getLeft() / 100 * page.getWidth()), (float) (area.getWidth() / 100 * page.getWidth()),
+                            (float) (area.getHeight() / 100 * page.getHeight()));
+                }
+                tables.addAll(tableExtractor.extractTables(page.getArea(area)));
+            }
+        } else {
+            tables.addAll(tableExtractor.extractTables(page));
+        }
+        return tables;
+    }
+
     private PageIterator getPageIterator(PDDocument pdfDocument) throws IOException {
-        ObjectExtractor extractor = new ObjectExtractor(pdfDocument);
+        ObjectExtractor extractor = new ObjectExtractor(pdfDocument, rulingPolicy);
         return (pages == null) ?
                 extractor.extract() :
                 extractor.extract(pages);
@@ -247,6 +345,38 @@ public class CommandLineApp {
         return Utils.parsePagesOption(pagesOption);
     }
 
+    private static int whichThreads(CommandLine line) throws ParseException {
+        if (!line.hasOption('j')) {
+            return 1;
+        }
+
+        try {
+            int threads = Integer.parseInt(line.getOptionValue('j'));
+            if (threads > 0) {
+                return threads;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new ParseException("threads must be a positive integer");
+    }
+
+    private static RulingIngestionPolicy whichRulingPolicy(CommandLine line) throws ParseException {
+        if (!line.hasOption('m')) {
+            return RulingIngestionPolicy.DEFAULT;
+        }
+
+        try {
+            int maximumRulings = Integer.parseInt(line.getOptionValue('m'));
+            if (maximumRulings >= 0) {
+                return RulingIngestionPolicy.Builder.newInstance().withMaximumRulings(maximumRulings).build();
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new ParseException("max-rulings must be a non-negative integer");
+    }
+
     private static ExtractionMethod whichExtractionMethod(CommandLine line) {
         // -r/--spreadsheet [deprecated; use -l] or -l/--lattice
         if (line.hasOption('r') || line.hasOption('l')) {
@@ -358,6 +488,20 @@ public class CommandLineApp {
                 .hasArg()
                 .argName("PAGES")
                 .build());
+        o.addOption(Option.builder("j")
+                .longOpt("threads")
+                .desc("Number of threads used to extract the pages of a document in parallel. "
+                        + "With --batch, the number of documents extracted concurrently instead. Default: 1")
+                .hasArg()
+                .argName("THREADS")
+                .build());
+        o.addOption(Option.builder("m")
+                .longOpt("max-rulings")
+                .desc("Most ruling lines read from a page; lines drawn after a page has that many are left out. "
+                        + "Default: " + RulingIngestionPolicy.DEFAULT_MAXIMUM_RULINGS)
+                .hasArg()
+                .argName("MAX_RULINGS")
+                .build());
 
         return o;
     }
@@ -365,8 +509,12 @@ public class CommandLineApp {
     private static class TableExtractor {
         private boolean guess = false;
         private boolean useLineReturns = false;
-        private BasicExtractionAlgorithm basicExtractor = new BasicExtractionAlgorithm();
         private SpreadsheetExtractionAlgorithm spreadsheetExtractor = new SpreadsheetExtractionAlgorithm();
+        // a detector per thread, so pages of the same document are rendered by the same renderer, released
+        // once the document is done; images are drawn as their bounding box, tables within them have no text
+        // to extract anyway
+        private final ThreadLocal<DetectionAlgorithm> detector = ThreadLocal.withInitial(
+                () -> new NurminenDetectionAlgorithm(NurminenDetectionAlgorithm.ImageRendering.BOUNDING_BOX));
 
         private boolean verticalRulingPositionsRelative = false;
         private List<Float> verticalRulingPositions = null;
@@ -396,6 +544,14 @@ public class CommandLineApp {
             this.method = method;
         }
 
+        /**
+         * Lets go of the current thread's detector, and of the document it renders. The page workers of a
+         * document are not reused, so only the thread that extracted a whole document needs this.
+         */
+        public void releaseDetector() {
+            detector.remove();
+        }
+
         public List<Table> extractTables(Page page) {
             ExtractionMethod effectiveMethod = this.method;
             if (effectiveMethod == ExtractionMethod.DECIDE) {
@@ -414,11 +570,12 @@ public class CommandLineApp {
         }
 
         public List<Table> extractTablesBasic(Page page) {
+            // BasicExtractionAlgorithm keeps the column positions it was last called with,
+            // so every page gets its own instance to allow extracting pages concurrently
+            BasicExtractionAlgorithm basicExtractor = new BasicExtractionAlgorithm();
             if (guess) {
                 // guess the page areas to extract using a detection algorithm
-                // currently we only have a detector that uses spreadsheets to find table areas
-                DetectionAlgorithm detector = new NurminenDetectionAlgorithm();
-                List<Rectangle> guesses = detector.detect(page);
+                List<Rectangle> guesses = detector.get().detect(page);
                 List<Table> tables = new ArrayList<>();
 
                 for (Rectangle guessRect : guesses) {
@@ -453,7 +610,7 @@ public class CommandLineApp {
         }
     }
 
-    private void writeTables(List<Table> tables, Appendable out) throws IOException {
+    private TableAppender openWriter(Appendable out) throws IOException {
         Writer writer = null;
         switch (outputFormat) {
             case CSV:
@@ -466,7 +623,7 @@ public class CommandLineApp {
                 writer = new TSVWriter();
                 break;
         }
-        writer.write(out, tables);
+        return writer.open(out);
     }
 
     private String getOutputFilename(File pdfFile) {
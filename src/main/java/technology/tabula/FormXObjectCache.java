@@ -0,0 +1,158 @@
+package technology.tabula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSBase;
+
+/**
+ * The rulings and glyphs already read from the Form XObjects of a document.
+ * <p>
+ * Letterheads, frames and grids of template-generated documents are often drawn through one
+ * Form XObject shared by every page. When a form is shown again with the same transformation,
+ * clipping and text state, on a page of the same geometry, {@link ObjectExtractor} replays what it
+ * found the first time instead of interpreting the form's content stream again.
+ * <p>
+ * A form is only recorded the second time it is shown in the same state, so forms used once, such as
+ * whole pages imported as forms, are never held. The recordings are bounded by the number of glyphs
+ * and rulings they keep, the least recently replayed going first.
+ * <p>
+ * A cache belongs to a single document, as it is keyed by the identity of the form's COS stream.
+ */
+public final class FormXObjectCache {
+
+    // the glyphs and rulings kept by default, a few dozen pages worth of text
+    public static final int DEFAULT_CAPACITY = 100_000;
+    // the forms shown once that are remembered, waiting to be shown again
+    private static final int SEEN_ONCE_MAXIMUM = 10_000;
+
+    private final int capacity;
+    private int weight = 0;
+    private final LinkedHashMap<Key, Recording> recordings = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Key, Boolean> seenOnce = new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+            return size() > SEEN_ONCE_MAXIMUM;
+        }
+    };
+
+    public FormXObjectCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity how many glyphs and rulings the recordings keep at most
+     */
+    public FormXObjectCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    synchronized Recording get(Key key) {
+        return recordings.get(key);
+    }
+
+    /**
+     * @return whether a form shown in the state of {@code key} should be recorded, which it is the second time
+     */
+    synchronized boolean shouldRecord(Key key) {
+        if (seenOnce.remove(key) != null) {
+            return true;
+        }
+        seenOnce.put(key, Boolean.TRUE);
+        return false;
+    }
+
+    synchronized void put(Key key, Recording recording) {
+        int recordingWeight = recording.weight();
+        if (recordingWeight > capacity) {
+            return;
+        }
+        Recording old = recordings.put(key, recording);
+        if (old != null) {
+            weight -= old.weight();
+        }
+        weight += recordingWeight;
+        for (Iterator<Recording> iterator = recordings.values().iterator(); weight > capacity; ) {
+            weight -= iterator.next().weight();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return how many form invocations are recorded
+     */
+    public synchronized int size() {
+        return recordings.size();
+    }
+
+    public synchronized void clear() {
+        recordings.clear();
+        seenOnce.clear();
+        weight = 0;
+    }
+
+    /**
+     * What a form produced when it was shown: its rulings after clipping, and its glyphs before
+     * duplicate suppression, so both can be replayed through the page's own filters.
+     */
+    static final class Recording {
+        final List<Ruling> rulings = new ArrayList<>();
+        final List<ObjectExtractorStreamEngine.PositionedGlyph> glyphs = new ArrayList<>();
+
+        int weight() {
+            return rulings.size() + glyphs.size();
+        }
+    }
+
+    /**
+     * A form together with everything its output depends on. The form and the objects are
+     * compared by identity, the values by equality.
+     */
+    static final class Key {
+        private final COSBase form;
+        private final Object[] objects;
+        private final double[] values;
+        private final int hashCode;
+
+        Key(COSBase form, Object[] objects, double[] values) {
+            this.form = form;
+            this.objects = objects;
+            this.values = values;
+            int hash = System.identityHashCode(form);
+            for (Object object : objects) {
+                hash = 31 * hash + System.identityHashCode(object);
+            }
+            this.hashCode = 31 * hash + Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            if (form != key.form || objects.length != key.objects.length) {
+                return false;
+            }
+            for (int i = 0; i < objects.length; i++) {
+                if (objects[i] != key.objects[i]) {
+                    return false;
+                }
+            }
+            return Arrays.equals(values, key.values);
+        }
+    }
+
+}
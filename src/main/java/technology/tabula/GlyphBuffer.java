@@ -0,0 +1,384 @@
+package technology.tabula;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+/**
+ * The glyphs of a page, stored in parallel primitive arrays instead of one {@link TextElement} per glyph.
+ * <p>
+ * Glyph texts, and the font, font size, width of space and direction glyphs share, are kept once per page
+ * and referenced by index. {@link #get(int)} creates a new {@link TextElement} view on every call and keeps
+ * none of them, so changes to a returned element are not written back; use {@link #set(int, TextElement)}
+ * for that. Sorting and the page's {@link PackedRectangleSpatialIndex} read the arrays instead of creating
+ * elements.
+ */
+final class GlyphBuffer extends AbstractList<TextElement> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private float[] top = new float[INITIAL_CAPACITY];
+    private float[] left = new float[INITIAL_CAPACITY];
+    private float[] width = new float[INITIAL_CAPACITY];
+    private float[] height = new float[INITIAL_CAPACITY];
+    private int[] textIndex = new int[INITIAL_CAPACITY];
+    private int[] styleIndex = new int[INITIAL_CAPACITY];
+    // order in which the glyphs were added, kept through sorting
+    private int[] rank = new int[INITIAL_CAPACITY];
+    private int size;
+    private int nextRank;
+    // whether the glyphs haven't changed since they were sorted in reading order
+    private boolean inReadingOrder;
+
+    private final List<String> texts = new ArrayList<>();
+    private final Map<String, Integer> textIndices = new HashMap<>();
+    private final List<Style> styles = new ArrayList<>();
+    private final Map<Style, Integer> styleIndices = new HashMap<>();
+
+    /**
+     * What the glyphs drawn with the same font at the same size have in common.
+     */
+    private static final class Style {
+        final PDFont font;
+        final float fontSize;
+        final float widthOfSpace;
+        final float direction;
+
+        Style(PDFont font, float fontSize, float widthOfSpace, float direction) {
+            this.font = font;
+            this.fontSize = fontSize;
+            this.widthOfSpace = widthOfSpace;
+            this.direction = direction;
+        }
+
+        /**
+         * @return whether elements of this style and of {@code other} can be equal, with fonts compared
+         * as {@link TextElement#equals(Object)} does
+         */
+        boolean sameAs(Style other) {
+            return this == other || (Objects.equals(font, other.font) && sameValues(other));
+        }
+
+        private boolean sameValues(Style other) {
+            return Float.floatToIntBits(fontSize) == Float.floatToIntBits(other.fontSize)
+                    && Float.floatToIntBits(widthOfSpace) == Float.floatToIntBits(other.widthOfSpace)
+                    && Float.floatToIntBits(direction) == Float.floatToIntBits(other.direction);
+        }
+
+        // fonts by identity, as different fonts can be equal
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Style)) {
+                return false;
+            }
+            Style other = (Style) obj;
+            return font == other.font && sameValues(other);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(font);
+            result = 31 * result + Float.floatToIntBits(fontSize);
+            result = 31 * result + Float.floatToIntBits(widthOfSpace);
+            result = 31 * result + Float.floatToIntBits(direction);
+            return result;
+        }
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
+    void add(float top, float left, float width, float height, PDFont font, float fontSize,
+             String text, float widthOfSpace, float direction) {
+        ensureCapacity(size + 1);
+        store(size, top, left, width, height, font, fontSize, text, widthOfSpace, direction);
+        rank[size++] = nextRank++;
+        modCount++;
+    }
+
+    @Override
+    public TextElement get(int index) {
+        checkIndex(index, size);
+        Style style = styles.get(styleIndex[index]);
+        return new TextElement(top[index], left[index], width[index], height[index], style.font, style.fontSize,
+                texts.get(textIndex[index]), style.widthOfSpace, style.direction);
+    }
+
+    @Override
+    public TextElement set(int index, TextElement element) {
+        TextElement previous = get(index);
+        store(index, element);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, TextElement element) {
+        checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        shift(index, index + 1, size - index);
+        store(index, element);
+        rank[index] = nextRank++;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public TextElement remove(int index) {
+        TextElement previous = get(index);
+        shift(index + 1, index, size - index - 1);
+        size--;
+        inReadingOrder = false;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        inReadingOrder = false;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Lets go of the room kept for glyphs that were never added.
+     */
+    void trimToSize() {
+        if (size < top.length) {
+            resize(size);
+        }
+    }
+
+    /**
+     * Sorts the glyphs in the same order {@link Utils#sort(List, Comparator)} puts their elements in.
+     * The glyphs are compared straight from the arrays for {@link Rectangle#ILL_DEFINED_ORDER}.
+     */
+    void sortElements(final Comparator<? super TextElement> comparator) {
+        boolean fromAdditionOrder = true;
+        for (int i = 1; i < size && fromAdditionOrder; i++) {
+            fromAdditionOrder = rank[i - 1] < rank[i];
+        }
+        List<Integer> order = Arrays.asList(positions());
+        if (comparator == Rectangle.ILL_DEFINED_ORDER) {
+            Utils.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return compareInReadingOrder(a, b);
+                }
+            });
+        } else {
+            Utils.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return comparator.compare(get(a), get(b));
+                }
+            });
+        }
+        permute(order);
+        modCount++;
+        inReadingOrder = fromAdditionOrder && comparator == Rectangle.ILL_DEFINED_ORDER;
+    }
+
+    /**
+     * @return whether the glyphs are in the order {@link #readingOrder()} returns
+     */
+    boolean isInReadingOrder() {
+        return inReadingOrder;
+    }
+
+    /**
+     * @return the positions of the glyphs in the order {@link Utils#sort(List, Comparator)} with
+     * {@link Rectangle#ILL_DEFINED_ORDER} puts them in when given the glyphs in the order they were added
+     */
+    int[] readingOrder() {
+        Integer[] order = positions();
+        if (!inReadingOrder) {
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Integer.compare(rank[a], rank[b]);
+                }
+            });
+            Utils.sort(Arrays.asList(order), new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return compareInReadingOrder(a, b);
+                }
+            });
+        }
+        int[] rv = new int[size];
+        for (int i = 0; i < size; i++) {
+            rv[i] = order[i];
+        }
+        return rv;
+    }
+
+    float getTop(int index) {
+        return top[index];
+    }
+
+    float getLeft(int index) {
+        return left[index];
+    }
+
+    float getWidth(int index) {
+        return width[index];
+    }
+
+    float getHeight(int index) {
+        return height[index];
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
+    private Integer[] positions() {
+        Integer[] positions = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
+        }
+        return positions;
+    }
+
+    /**
+     * {@link Rectangle#ILL_DEFINED_ORDER} for the elements of the glyphs {@code a} and {@code b}.
+     */
+    private int compareInReadingOrder(int a, int b) {
+        if (sameElement(a, b)) {
+            return 0;
+        }
+        // as Rectangle#getTop and Rectangle#getBottom, which go through doubles
+        float topA = top[a], bottomA = (float) ((double) top[a] + height[a]);
+        float topB = top[b], bottomB = (float) ((double) top[b] + height[b]);
+        float verticalOverlap = Math.max(0, Math.min(bottomA, bottomB) - Math.max(topA, topB));
+        if (verticalOverlap > Rectangle.VERTICAL_COMPARISON_THRESHOLD) {
+            return Double.compare(left[a], left[b]);
+        }
+        return Float.compare(bottomA, bottomB);
+    }
+
+    /**
+     * {@link TextElement#equals(Object)} for the elements of the glyphs {@code a} and {@code b}.
+     */
+    private boolean sameElement(int a, int b) {
+        return (double) left[a] == left[b] && (double) top[a] == top[b]
+                && (double) width[a] == width[b] && (double) height[a] == height[b]
+                && textIndex[a] == textIndex[b]
+                && styles.get(styleIndex[a]).sameAs(styles.get(styleIndex[b]));
+    }
+
+    /**
+     * Moves the glyph at {@code order.get(i)} to {@code i}, following the cycles of the permutation in place.
+     */
+    private void permute(List<Integer> order) {
+        boolean[] placed = new boolean[size];
+        for (int start = 0; start < size; start++) {
+            if (placed[start]) {
+                continue;
+            }
+            float savedTop = top[start], savedLeft = left[start], savedWidth = width[start], savedHeight = height[start];
+            int savedTextIndex = textIndex[start], savedStyleIndex = styleIndex[start], savedRank = rank[start];
+
+            int to = start;
+            for (int from = order.get(to); from != start; to = from, from = order.get(to)) {
+                move(from, to);
+                placed[to] = true;
+            }
+            top[to] = savedTop;
+            left[to] = savedLeft;
+            width[to] = savedWidth;
+            height[to] = savedHeight;
+            textIndex[to] = savedTextIndex;
+            styleIndex[to] = savedStyleIndex;
+            rank[to] = savedRank;
+            placed[to] = true;
+        }
+    }
+
+    private void move(int from, int to) {
+        top[to] = top[from];
+        left[to] = left[from];
+        width[to] = width[from];
+        height[to] = height[from];
+        textIndex[to] = textIndex[from];
+        styleIndex[to] = styleIndex[from];
+        rank[to] = rank[from];
+    }
+
+    private void store(int index, TextElement element) {
+        store(index, element.y, element.x, element.width, element.height, element.getFont(), element.getFontSize(),
+                element.getText(), element.getWidthOfSpace(), element.getDirection());
+    }
+
+    private void store(int index, float top, float left, float width, float height, PDFont font, float fontSize,
+                       String text, float widthOfSpace, float direction) {
+        this.top[index] = top;
+        this.left[index] = left;
+        this.width[index] = width;
+        this.height[index] = height;
+        this.textIndex[index] = indexOf(text);
+        this.styleIndex[index] = indexOf(new Style(font, fontSize, widthOfSpace, direction));
+        inReadingOrder = false;
+    }
+
+    private int indexOf(String text) {
+        Integer index = textIndices.get(text);
+        if (index == null) {
+            index = texts.size();
+            texts.add(text);
+            textIndices.put(text, index);
+        }
+        return index;
+    }
+
+    private int indexOf(Style style) {
+        Integer index = styleIndices.get(style);
+        if (index == null) {
+            index = styles.size();
+            styles.add(style);
+            styleIndices.put(style, index);
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > top.length) {
+            resize(Math.max(capacity, top.length * 2));
+        }
+    }
+
+    private void resize(int capacity) {
+        top = Arrays.copyOf(top, capacity);
+        left = Arrays.copyOf(left, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        textIndex = Arrays.copyOf(textIndex, capacity);
+        styleIndex = Arrays.copyOf(styleIndex, capacity);
+        rank = Arrays.copyOf(rank, capacity);
+    }
+
+    private void shift(int from, int to, int length) {
+        System.arraycopy(top, from, top, to, length);
+        System.arraycopy(left, from, left, to, length);
+        System.arraycopy(width, from, width, to, length);
+        System.arraycopy(height, from, height, to, length);
+        System.arraycopy(textIndex, from, textIndex, to, length);
+        System.arraycopy(styleIndex, from, styleIndex, to, length);
+        System.arraycopy(rank, from, rank, to, length);
+    }
+
+    private static void checkIndex(int index, int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + limit);
+        }
+    }
+
+}
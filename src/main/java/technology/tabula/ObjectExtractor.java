@@ -1,16 +1,65 @@
 package technology.tabula;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ObjectExtractor implements java.io.Closeable {
 
+    private static final Logger logger = LoggerFactory.getLogger(ObjectExtractor.class);
+
     private final PDDocument pdfDocument;
+    private final RulingIngestionPolicy rulingPolicy;
+    private final FormXObjectCache formCache = new FormXObjectCache();
 
     public ObjectExtractor(PDDocument pdfDocument) {
+        this(pdfDocument, RulingIngestionPolicy.DEFAULT);
+    }
+
+    /**
+     * @param rulingPolicy which of the line segments painted on a page become its rulings
+     */
+    public ObjectExtractor(PDDocument pdfDocument, RulingIngestionPolicy rulingPolicy) {
         this.pdfDocument = pdfDocument;
+        this.rulingPolicy = rulingPolicy;
+    }
+
+    /**
+     * Opens a new, independent handle on the document being extracted.
+     * PDFBox documents are not thread-safe, so every worker of
+     * {@link #extract(Iterable, int, DocumentLoader, PageProcessor)} gets its own.
+     */
+    public interface DocumentLoader {
+        PDDocument load() throws IOException;
+    }
+
+    /**
+     * Turns an extracted {@link Page} into a result, e.g. the tables found on it.
+     * Called on worker threads, so implementations must not share mutable state.
+     */
+    public interface PageProcessor<T> {
+        T process(Page page) throws IOException;
+    }
+
+    /**
+     * Receives the results of {@link #extract(Iterable, int, DocumentLoader, PageProcessor, ResultHandler)}
+     * one page at a time, in page order, on the calling thread.
+     */
+    public interface ResultHandler<T> {
+        void handle(T result) throws IOException;
     }
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
@@ -20,13 +69,14 @@ public class ObjectExtractor implements java.io.Closeable {
         }
         PDPage page = pdfDocument.getPage(pageNumber - 1);
 
-        ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(page);
+        ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(page, rulingPolicy, formCache);
         streamEngine.processPage(page);
+        if (streamEngine.getDroppedRulingCount() > 0) {
+            logger.warn("Page {} has more rulings than allowed, left out the last {} drawn",
+                    pageNumber, streamEngine.getDroppedRulingCount());
+        }
 
-        TextStripper textStripper = new TextStripper(pdfDocument, pageNumber);
-        textStripper.process();
-
-        Utils.sort(textStripper.getTextElements(), Rectangle.ILL_DEFINED_ORDER);
+        streamEngine.sortTextElements(Rectangle.ILL_DEFINED_ORDER);
 
         float width, height;
         int rotation = page.getRotation();
@@ -45,10 +95,11 @@ public class ObjectExtractor implements java.io.Closeable {
                 .withPdPage(page)
                 .withPdDocument(pdfDocument)
                 .withRulings(streamEngine.rulings)
-                .withTextElements(textStripper.getTextElements())
-                .withMinCharWidth(textStripper.getMinCharWidth())
-                .withMinCharHeight(textStripper.getMinCharHeight())
-                .withIndex(textStripper.getSpatialIndex())
+                .withTextElements(streamEngine.getTextElements())
+                .withMinCharWidth(streamEngine.getMinCharWidth())
+                .withMinCharHeight(streamEngine.getMinCharHeight())
+                .withIndex(streamEngine.getSpatialIndex())
+                .withDroppedRulingCount(streamEngine.getDroppedRulingCount())
                 .build();
     }
 
@@ -65,9 +116,126 @@ public class ObjectExtractor implements java.io.Closeable {
         return extract(Utils.range(pageNumber, pageNumber + 1)).next();
     }
 
+    /**
+     * Extracts {@code pages} on up to {@code threads} worker threads and runs {@code processor}
+     * on every page, returning the results in the same order as {@code pages}.
+     * <p>
+     * One worker reuses this extractor's document; every other worker opens its own
+     * through {@code documentLoader} and closes it when done. The document of this
+     * extractor must not be used by the caller until this method returns.
+     */
+    public <T> List<T> extract(Iterable<Integer> pages, int threads, DocumentLoader documentLoader, PageProcessor<T> processor) throws IOException {
+        final List<T> rv = new ArrayList<>();
+        extract(pages, threads, documentLoader, processor, rv::add);
+        return rv;
+    }
+
+    /**
+     * Like {@link #extract(Iterable, int, DocumentLoader, PageProcessor)}, but hands every result to
+     * {@code handler} as soon as it and the results of all preceding pages are available.
+     * Workers stay at most {@code 2 * threads} pages ahead of the handler, so the number of
+     * results held in memory does not grow with the document.
+     */
+    public <T> void extract(Iterable<Integer> pages, int threads, DocumentLoader documentLoader, PageProcessor<T> processor,
+                            ResultHandler<T> handler) throws IOException {
+        final List<Integer> pageNumbers = new ArrayList<>();
+        for (Integer pageNumber : pages) {
+            pageNumbers.add(pageNumber);
+        }
+
+        final List<CompletableFuture<T>> results = new ArrayList<>(pageNumbers.size());
+        for (int i = 0; i < pageNumbers.size(); i++) {
+            results.add(new CompletableFuture<T>());
+        }
+
+        final AtomicInteger nextPage = new AtomicInteger();
+        int workerCount = Math.max(1, Math.min(threads, pageNumbers.size()));
+        // a worker takes a permit before claiming a page and the handler gives it back once the page is delivered
+        final Semaphore window = new Semaphore(2 * workerCount);
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                final ObjectExtractor sharedExtractor = i == 0 ? this : null;
+                executor.execute(() -> extractPages(sharedExtractor, rulingPolicy, documentLoader, processor, pageNumbers, nextPage, window, results));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                T result = getResult(results.get(i));
+                results.set(i, null);
+                handler.handle(result);
+                window.release();
+            }
+        } finally {
+            // stop the workers from picking up more pages and wait for them to release their documents
+            nextPage.set(pageNumbers.size());
+            window.release(workerCount);
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static <T> void extractPages(ObjectExtractor extractor, RulingIngestionPolicy rulingPolicy,
+                                         DocumentLoader documentLoader, PageProcessor<T> processor,
+                                         List<Integer> pageNumbers, AtomicInteger nextPage, Semaphore window,
+                                         List<CompletableFuture<T>> results) {
+        PDDocument ownDocument = null;
+        try {
+            while (true) {
+                window.acquireUninterruptibly();
+                int i = nextPage.getAndIncrement();
+                if (i >= pageNumbers.size()) {
+                    break;
+                }
+                CompletableFuture<T> result = results.get(i);
+                try {
+                    if (extractor == null) {
+                        ownDocument = documentLoader.load();
+                        extractor = new ObjectExtractor(ownDocument, rulingPolicy);
+                    }
+                    result.complete(processor.process(extractor.extractPage(pageNumbers.get(i))));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            }
+        } finally {
+            if (ownDocument != null) {
+                try {
+                    ownDocument.close();
+                } catch (IOException e) {
+                    logger.warn("Could not close a page worker's copy of the document", e);
+                }
+            }
+        }
+    }
+
+    private static <T> T getResult(CompletableFuture<T> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for page extraction");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
     public void close() throws IOException {
         pdfDocument.close();
     }
-    
+
 }
@@ -2,25 +2,66 @@ package technology.tabula;
 
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.fontbox.ttf.TrueTypeFont;
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDCIDFont;
+import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDSimpleFont;
+import org.apache.pdfbox.pdmodel.font.PDTrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType3CharProc;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
+import org.apache.pdfbox.pdmodel.graphics.state.PDTextState;
+import org.apache.pdfbox.pdmodel.interactive.pagenavigation.PDThreadBead;
+import org.apache.pdfbox.text.TextPosition;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static java.awt.geom.PathIterator.*;
 
+/**
+ * Reads the rulings and the text of a page in a single pass over its content stream.
+ * <p>
+ * Glyphs are turned into {@link TextPosition}s and grouped the way {@link org.apache.pdfbox.text.PDFTextStripper}
+ * does it (duplicate suppression, article beads and diacritics), so the text elements are the same
+ * as the ones {@link TextStripper} collects, without a second parse of the page and without building its text.
+ */
 class ObjectExtractorStreamEngine extends PDFGraphicsStreamEngine {
 
     protected List<Ruling> rulings;
@@ -29,14 +70,77 @@ class ObjectExtractorStreamEngine extends PDFGraphicsStreamEngine {
     private Logger logger;
     private int clipWindingRule = -1;
     private GeneralPath currentPath = new GeneralPath();
-
-    private static final float RULING_MINIMUM_LENGTH = 0.01f;
+    // the clipping path whose bounds are cached in clippingPathBounds
+    private Shape boundedClippingPath;
+    private Rectangle2D clippingPathBounds;
+
+    // additional glyph list for Unicode mapping, as used by PDFTextStripper
+    private static final GlyphList GLYPH_LIST = loadGlyphList();
+
+    private final int pageRotation;
+    private final PDRectangle pageSize;
+    private final Matrix translateMatrix;
+    private final List<PDRectangle> beadRectangles;
+    private final List<List<TextPosition>> charactersByArticle;
+    private final Map<String, TreeMap<Float, TreeSet<Float>>> characterListMapping = new HashMap<>();
+    private final Map<COSDictionary, Float> fontHeightMap = new HashMap<>();
+    private final TextElementCollector textElements;
+    private int type3StreamLevel = 0;
+
+    private final RulingIngestionPolicy rulingPolicy;
+    // endpoints of the rulings kept so far, when the policy drops duplicates
+    private final Set<Map.Entry<Point2D, Point2D>> rulingEndpoints;
+    private int droppedRulingCount;
+
+    private final FormXObjectCache formCache;
+    // the forms being shown and recorded, innermost first
+    private final Deque<FormXObjectCache.Recording> formRecordings = new ArrayDeque<>();
 
     protected ObjectExtractorStreamEngine(PDPage page) {
+        this(page, new TextElementCollector(), true, RulingIngestionPolicy.DEFAULT, null);
+    }
+
+    ObjectExtractorStreamEngine(PDPage page, RulingIngestionPolicy rulingPolicy, FormXObjectCache formCache) {
+        this(page, new TextElementCollector(), true, rulingPolicy, formCache);
+    }
+
+    ObjectExtractorStreamEngine(PDPage page, TextElementCollector textElements, boolean extractRulingLines) {
+        this(page, textElements, extractRulingLines, null);
+    }
+
+    ObjectExtractorStreamEngine(PDPage page, TextElementCollector textElements, boolean extractRulingLines,
+                                FormXObjectCache formCache) {
+        this(page, textElements, extractRulingLines, RulingIngestionPolicy.DEFAULT, formCache);
+    }
+
+    /**
+     * @param formCache the forms already read from other pages of the document, or null to read every form
+     */
+    private ObjectExtractorStreamEngine(PDPage page, TextElementCollector textElements, boolean extractRulingLines,
+                                        RulingIngestionPolicy rulingPolicy, FormXObjectCache formCache) {
         super(page);
+        this.textElements = textElements;
+        this.extractRulingLines = extractRulingLines;
+        this.rulingPolicy = rulingPolicy;
+        this.formCache = formCache;
+        this.rulingEndpoints = rulingPolicy.dropsDuplicates() ? new HashSet<Map.Entry<Point2D, Point2D>>() : null;
         logger = LoggerFactory.getLogger(ObjectExtractorStreamEngine.class);
         rulings = new ArrayList<>();
 
+        pageRotation = page.getRotation();
+        pageSize = page.getCropBox();
+        if (pageSize.getLowerLeftX() == 0 && pageSize.getLowerLeftY() == 0) {
+            translateMatrix = null;
+        } else {
+            // translation matrix for cropbox
+            translateMatrix = Matrix.getTranslateInstance(-pageSize.getLowerLeftX(), -pageSize.getLowerLeftY());
+        }
+        beadRectangles = getBeadRectangles(page);
+        charactersByArticle = new ArrayList<>();
+        for (int i = 0; i < 1 + beadRectangles.size() * 2; i++) {
+            charactersByArticle.add(new ArrayList<TextPosition>());
+        }
+
         // Calculate page transform:
         pageTransform = new AffineTransform();
         PDRectangle pageCropBox = getPage().getCropBox();
@@ -90,6 +194,8 @@ class ObjectExtractorStreamEngine extends PDFGraphicsStreamEngine {
         if (clipWindingRule != -1) {
             currentPath.setWindingRule(clipWindingRule);
             getGraphicsState().intersectClippingPath(currentPath);
+            // the graphics state may have intersected its clipping path in place
+            boundedClippingPath = null;
             clipWindingRule = -1;
         }
         currentPath.reset();
@@ -135,9 +241,6 @@ class ObjectExtractorStreamEngine extends PDFGraphicsStreamEngine {
             return;
         }
 
-        boolean didNotPassedTheFilter = filterPathBySegmentType();
-        if (didNotPassedTheFilter) return;
-
         // TODO: how to implement color filter?
 
         // Skip the first path operation and save it as the starting point.
@@ -146,14 +249,20 @@ class ObjectExtractorStreamEngine extends PDFGraphicsStreamEngine {
         float[] coordinates = new float[6];
         int currentSegment;
 
-        Point2D.Float startPoint = getStartPoint(pathIterator);
+        // only paths of straight segments are considered
+        if (pathIterator.currentSegment(coordinates) != SEG_MOVETO) {
+            currentPath.reset();
+            return;
+        }
+        Point2D.Float startPoint = new Point2D.Float(Utils.round(coordinates[0], 2), Utils.round(coordinates[1], 2));
         Point2D.Float last_move = startPoint;
         Point2D.Float endPoint = null;
-        Line2D.Float line;
         PointComparator pointComparator = new PointComparator();
+        List<Line2D.Float> lines = new ArrayList<>();
 
         while (!pathIterator.isDone()) {
             pathIterator.next();
+            boolean pastLastSegment = pathIterator.isDone();
             // This can be the last segment, when pathIterator.isDone, but we need to
             // process it otherwise us-017.pdf fails the last value.
             try {
@@ -161,14 +270,17 @@ class ObjectExtractorStreamEngine extends PDFGraphicsStreamEngine {
             } catch (IndexOutOfBoundsException ex) {
                 continue;
             }
+            if (!pastLastSegment && currentSegment != SEG_LINETO && currentSegment != SEG_CLOSE && currentSegment != SEG_MOVETO) {
+                currentPath.reset();
+                return;
+            }
             switch (currentSegment) {
                 case SEG_LINETO:
                     endPoint = new Point2D.Float(coordinates[0], coordinates[1]);
                     if (startPoint == null || endPoint == null) {
                         break;
                     }
-                    line = getLineBetween(startPoint, endPoint, pointComparator);
-                    verifyLineIntersectsClipping(line);
+                    lines.add(getLineBetween(startPoint, endPoint, pointComparator));
                     break;
                 case SEG_MOVETO:
                     last_move = new Point2D.Float(coordinates[0], coordinates[1]);
@@ -182,58 +294,472 @@ class ObjectExtractorStreamEngine extends PDFGraphicsStreamEngine {
                     if (startPoint == null || endPoint == null) {
                         break;
                     }
-                    line = getLineBetween(endPoint, last_move, pointComparator);
-                    verifyLineIntersectsClipping(line);
+                    lines.add(getLineBetween(endPoint, last_move, pointComparator));
                     break;
             }
             startPoint = endPoint;
         }
+        for (Line2D.Float line : lines) {
+            verifyLineIntersectsClipping(line);
+        }
         currentPath.reset();
     }
 
-    private boolean filterPathBySegmentType() {
-        PathIterator pathIterator = currentPath.getPathIterator(pageTransform);
-        float[] coordinates = new float[6];
-        int currentSegmentType = pathIterator.currentSegment(coordinates);
-        if (currentSegmentType != SEG_MOVETO) {
-            currentPath.reset();
-            return true;
+    private Line2D.Float getLineBetween(Point2D.Float pointA, Point2D.Float pointB, PointComparator pointComparator) {
+        if (pointComparator.compare(pointA, pointB) == -1) {
+            return new Line2D.Float(pointA, pointB);
         }
-        pathIterator.next();
-        while (!pathIterator.isDone()) {
-            currentSegmentType = pathIterator.currentSegment(coordinates);
-            if (currentSegmentType != SEG_LINETO && currentSegmentType != SEG_CLOSE && currentSegmentType != SEG_MOVETO) {
-                currentPath.reset();
-                return true;
+        return new Line2D.Float(pointB, pointA);
+    }
+
+    private void verifyLineIntersectsClipping(Line2D.Float line) {
+        Rectangle2D currentClippingPath = currentClippingPathBounds();
+        if (line.intersects(currentClippingPath)) {
+            Ruling ruling = new Ruling(line.getP1(), line.getP2());
+            if (rulingPolicy.dropsOblique() && ruling.oblique()) {
+                return;
             }
-            pathIterator.next();
+            ruling = ruling.intersect(currentClippingPath);
+            if (ruling.length() > rulingPolicy.getMinimumLength()) {
+                // the page's rulings are snapped in place later on, the recorded ones must not be
+                for (FormXObjectCache.Recording recording : formRecordings) {
+                    recording.rulings.add(new Ruling(ruling.getP1(), ruling.getP2()));
+                }
+                addRuling(ruling);
+            }
+        }
+    }
+
+    /**
+     * Keeps the ruling unless it is a duplicate the policy drops, or the page already has as many rulings
+     * as the policy allows, in which case it is only counted. Endpoints are no longer remembered by then,
+     * so duplicates of the rulings left out are counted too.
+     */
+    private void addRuling(Ruling ruling) {
+        Map.Entry<Point2D, Point2D> endpoints = rulingEndpoints == null ? null
+                : new AbstractMap.SimpleImmutableEntry<Point2D, Point2D>(ruling.getP1(), ruling.getP2());
+        if (endpoints != null && rulingEndpoints.contains(endpoints)) {
+            return;
+        }
+        if (rulings.size() >= rulingPolicy.getMaximumRulings()) {
+            droppedRulingCount++;
+            return;
+        }
+        if (endpoints != null) {
+            rulingEndpoints.add(endpoints);
         }
-        return false;
+        rulings.add(ruling);
     }
 
-    private Point2D.Float getStartPoint(PathIterator pathIterator) {
-        float[] startPointCoordinates = new float[6];
-        pathIterator.currentSegment(startPointCoordinates);
-        float x = Utils.round(startPointCoordinates[0], 2);
-        float y = Utils.round(startPointCoordinates[1], 2);
-        return new Point2D.Float(x, y);
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
+    @Override
+    public void processPage(PDPage page) throws IOException {
+        super.processPage(page);
+        for (List<TextPosition> article : charactersByArticle) {
+            for (TextPosition textPosition : article) {
+                textElements.add(textPosition);
+            }
+        }
+        textElements.getTextElements().trimToSize();
     }
 
-    private Line2D.Float getLineBetween(Point2D.Float pointA, Point2D.Float pointB, PointComparator pointComparator) {
-        if (pointComparator.compare(pointA, pointB) == -1) {
-            return new Line2D.Float(pointA, pointB);
+    @Override
+    public void showForm(PDFormXObject form) throws IOException {
+        showCachedForm(form);
+    }
+
+    @Override
+    public void showTransparencyGroup(PDTransparencyGroup form) throws IOException {
+        showCachedForm(form);
+    }
+
+    /**
+     * Replays what the form produced when it was last shown in the same state, or shows it, recording it
+     * if it was shown in that state before.
+     */
+    private void showCachedForm(PDFormXObject form) throws IOException {
+        FormXObjectCache.Key key = formCache == null || type3StreamLevel > 0 ? null : getFormKey(form);
+        if (key == null) {
+            showUncachedForm(form);
+            return;
         }
-        return new Line2D.Float(pointB, pointA);
+        FormXObjectCache.Recording recording = formCache.get(key);
+        if (recording != null) {
+            for (Ruling ruling : recording.rulings) {
+                for (FormXObjectCache.Recording outer : formRecordings) {
+                    outer.rulings.add(ruling);
+                }
+                addRuling(new Ruling(ruling.getP1(), ruling.getP2()));
+            }
+            for (PositionedGlyph glyph : recording.glyphs) {
+                addGlyph(glyph);
+            }
+            return;
+        }
+        if (!formCache.shouldRecord(key)) {
+            showUncachedForm(form);
+            return;
+        }
+        recording = new FormXObjectCache.Recording();
+        formRecordings.push(recording);
+        try {
+            showUncachedForm(form);
+        } finally {
+            formRecordings.pop();
+        }
+        formCache.put(key, recording);
     }
 
-    private void verifyLineIntersectsClipping(Line2D.Float line) {
-        Rectangle2D currentClippingPath = currentClippingPath();
-        if (line.intersects(currentClippingPath)) {
-            Ruling ruling = new Ruling(line.getP1(), line.getP2()).intersect(currentClippingPath);
-            if (ruling.length() > RULING_MINIMUM_LENGTH) {
-                rulings.add(ruling);
+    private void showUncachedForm(PDFormXObject form) throws IOException {
+        if (form instanceof PDTransparencyGroup) {
+            super.showTransparencyGroup((PDTransparencyGroup) form);
+        } else {
+            super.showForm(form);
+        }
+    }
+
+    /**
+     * The state a form's rulings and glyphs depend on, or null if the form can't be cached here
+     * because the clipping path isn't a rectangle (rulings are clipped to its bounds only).
+     * A form without resources of its own uses those of the page or form showing it, so they are part of it.
+     */
+    private FormXObjectCache.Key getFormKey(PDFormXObject form) {
+        PDGraphicsState state = getGraphicsState();
+        Area clippingPath = state.getCurrentClippingPath();
+        if (!clippingPath.isRectangular()) {
+            return null;
+        }
+        Rectangle2D clip = clippingPath.getBounds2D();
+        Matrix ctm = state.getCurrentTransformationMatrix();
+        PDTextState textState = state.getTextState();
+        PDFont font = textState.getFont();
+        PDResources inheritedResources = form.getResources() == null ? getResources() : null;
+        return new FormXObjectCache.Key(form.getCOSObject(),
+                new Object[] {
+                        font == null ? null : font.getCOSObject(), rulingPolicy,
+                        inheritedResources == null ? null : inheritedResources.getCOSObject() },
+                new double[] {
+                        ctm.getScaleX(), ctm.getShearY(), ctm.getShearX(), ctm.getScaleY(),
+                        ctm.getTranslateX(), ctm.getTranslateY(),
+                        clip.getMinX(), clip.getMinY(), clip.getMaxX(), clip.getMaxY(),
+                        pageRotation, pageSize.getLowerLeftX(), pageSize.getLowerLeftY(),
+                        pageSize.getUpperRightX(), pageSize.getUpperRightY(),
+                        textState.getFontSize(), textState.getCharacterSpacing(), textState.getWordSpacing(),
+                        textState.getHorizontalScaling(), textState.getLeading(), textState.getRise(),
+                        extractRulingLines ? 1 : 0 });
+    }
+
+    @Override
+    protected void processType3Stream(PDType3CharProc charProc, Matrix textRenderingMatrix) throws IOException {
+        // the glyph procedure is only looked at for rulings, text shown by it is not part of the page text
+        type3StreamLevel++;
+        try {
+            super.processType3Stream(charProc, textRenderingMatrix);
+        } finally {
+            type3StreamLevel--;
+        }
+    }
+
+    @Override
+    protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement) throws IOException {
+        if (type3StreamLevel == 0) {
+            PositionedGlyph glyph = getPositionedGlyph(textRenderingMatrix, font, code, displacement);
+            if (glyph != null) {
+                addGlyph(glyph);
+            }
+        }
+        if (font instanceof PDType3Font) {
+            super.showGlyph(textRenderingMatrix, font, code, displacement);
+        }
+    }
+
+    private void addGlyph(PositionedGlyph glyph) {
+        for (FormXObjectCache.Recording recording : formRecordings) {
+            recording.glyphs.add(glyph);
+        }
+        processTextPosition(glyph.toTextPosition());
+    }
+
+    /**
+     * The position of a glyph as PDFBox's text extraction computes it (LegacyPDFStreamEngine),
+     * or null if the glyph of a composite font has no Unicode mapping.
+     */
+    private PositionedGlyph getPositionedGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement) throws IOException {
+        PDGraphicsState state = getGraphicsState();
+        Matrix ctm = state.getCurrentTransformationMatrix();
+        float fontSize = state.getTextState().getFontSize();
+        float horizontalScaling = state.getTextState().getHorizontalScaling() / 100f;
+        Matrix textMatrix = getTextMatrix();
+
+        float displacementX = displacement.getX();
+        // the width of vertical characters isn't provided by their displacement
+        if (font.isVertical()) {
+            displacementX = font.getWidth(code) / 1000;
+            TrueTypeFont ttf = null;
+            if (font instanceof PDTrueTypeFont) {
+                ttf = ((PDTrueTypeFont) font).getTrueTypeFont();
+            } else if (font instanceof PDType0Font) {
+                PDCIDFont cidFont = ((PDType0Font) font).getDescendantFont();
+                if (cidFont instanceof PDCIDFontType2) {
+                    ttf = ((PDCIDFontType2) cidFont).getTrueTypeFont();
+                }
+            }
+            if (ttf != null && ttf.getUnitsPerEm() != 1000) {
+                displacementX *= 1000f / ttf.getUnitsPerEm();
+            }
+        }
+
+        // combined displacement, without character and word spacing
+        float tx = displacementX * fontSize * horizontalScaling;
+        float ty = displacement.getY() * fontSize;
+        Matrix nextTextRenderingMatrix = Matrix.getTranslateInstance(tx, ty).multiply(textMatrix).multiply(ctm);
+        float nextX = nextTextRenderingMatrix.getTranslateX();
+        float nextY = nextTextRenderingMatrix.getTranslateY();
+
+        float dxDisplay = nextX - textRenderingMatrix.getTranslateX();
+        Float fontHeight = fontHeightMap.get(font.getCOSObject());
+        if (fontHeight == null) {
+            fontHeight = TextElementCollector.computeFontHeight(font);
+            fontHeightMap.put(font.getCOSObject(), fontHeight);
+        }
+        float dyDisplay = fontHeight * textRenderingMatrix.getScalingFactorY();
+
+        float glyphSpaceToTextSpaceFactor = 1 / 1000f;
+        if (font instanceof PDType3Font) {
+            glyphSpaceToTextSpaceFactor = font.getFontMatrix().getScaleX();
+        }
+
+        float spaceWidthText = 0;
+        try {
+            // to avoid crash as described in PDFBOX-614, see what the space displacement should be
+            spaceWidthText = font.getSpaceWidth() * glyphSpaceToTextSpaceFactor;
+        } catch (Throwable exception) {
+            logger.warn(exception.toString(), exception);
+        }
+        if (spaceWidthText == 0) {
+            // the average space width appears to be higher than necessary so make it smaller
+            spaceWidthText = font.getAverageFontWidth() * glyphSpaceToTextSpaceFactor * .80f;
+        }
+        if (spaceWidthText == 0) {
+            spaceWidthText = 1.0f; // if could not find font, use a generic value
+        }
+        float spaceWidthDisplay = spaceWidthText * textRenderingMatrix.getScalingFactorX();
+
+        String unicodeMapping = font.toUnicode(code, GLYPH_LIST);
+        if (unicodeMapping == null) {
+            if (font instanceof PDSimpleFont) {
+                // like Acrobat, coerce the character code of simple fonts into Unicode
+                unicodeMapping = new String(new char[] { (char) code });
+            } else {
+                return null;
+            }
+        }
+
+        Matrix translatedTextRenderingMatrix;
+        if (translateMatrix == null) {
+            translatedTextRenderingMatrix = textRenderingMatrix;
+        } else {
+            translatedTextRenderingMatrix = Matrix.concatenate(translateMatrix, textRenderingMatrix);
+            nextX -= pageSize.getLowerLeftX();
+            nextY -= pageSize.getLowerLeftY();
+        }
+
+        return new PositionedGlyph(pageRotation, pageSize.getWidth(), pageSize.getHeight(),
+                translatedTextRenderingMatrix, nextX, nextY, Math.abs(dyDisplay), dxDisplay,
+                Math.abs(spaceWidthDisplay), unicodeMapping, code, font, fontSize,
+                (int) (fontSize * textMatrix.getScalingFactorX()));
+    }
+
+    /**
+     * What a {@link TextPosition} is made of. Text positions are changed when diacritics are merged
+     * into them, so a glyph replayed from a {@link FormXObjectCache} needs a fresh one each time.
+     */
+    static final class PositionedGlyph {
+        private final int pageRotation;
+        private final float pageWidth;
+        private final float pageHeight;
+        private final Matrix textMatrix;
+        private final float endX;
+        private final float endY;
+        private final float maxHeight;
+        private final float individualWidth;
+        private final float spaceWidth;
+        private final String unicode;
+        private final int code;
+        private final PDFont font;
+        private final float fontSize;
+        private final int fontSizeInPt;
+
+        PositionedGlyph(int pageRotation, float pageWidth, float pageHeight, Matrix textMatrix, float endX, float endY,
+                        float maxHeight, float individualWidth, float spaceWidth, String unicode, int code,
+                        PDFont font, float fontSize, int fontSizeInPt) {
+            this.pageRotation = pageRotation;
+            this.pageWidth = pageWidth;
+            this.pageHeight = pageHeight;
+            this.textMatrix = textMatrix;
+            this.endX = endX;
+            this.endY = endY;
+            this.maxHeight = maxHeight;
+            this.individualWidth = individualWidth;
+            this.spaceWidth = spaceWidth;
+            this.unicode = unicode;
+            this.code = code;
+            this.font = font;
+            this.fontSize = fontSize;
+            this.fontSizeInPt = fontSizeInPt;
+        }
+
+        TextPosition toTextPosition() {
+            return new TextPosition(pageRotation, pageWidth, pageHeight, textMatrix, endX, endY, maxHeight,
+                    individualWidth, spaceWidth, unicode, new int[] { code }, font, fontSize, fontSizeInPt);
+        }
+    }
+
+    /**
+     * Drops glyphs drawn over an identical glyph at the same position, sorts the rest into
+     * the article of their bead and merges diacritics into the preceding character.
+     */
+    private void processTextPosition(TextPosition text) {
+        String textCharacter = text.getUnicode();
+        float textX = text.getX();
+        float textY = text.getY();
+        TreeMap<Float, TreeSet<Float>> sameTextCharacters = characterListMapping.get(textCharacter);
+        if (sameTextCharacters == null) {
+            sameTextCharacters = new TreeMap<>();
+            characterListMapping.put(textCharacter, sameTextCharacters);
+        }
+        float tolerance = text.getWidth() / textCharacter.length() / 3.0f;
+
+        SortedMap<Float, TreeSet<Float>> xMatches = sameTextCharacters.subMap(textX - tolerance, textX + tolerance);
+        for (TreeSet<Float> xMatch : xMatches.values()) {
+            SortedSet<Float> yMatches = xMatch.subSet(textY - tolerance, textY + tolerance);
+            if (!yMatches.isEmpty()) {
+                return;
+            }
+        }
+        TreeSet<Float> ySet = sameTextCharacters.get(textX);
+        if (ySet == null) {
+            ySet = new TreeSet<>();
+            sameTextCharacters.put(textX, ySet);
+        }
+        ySet.add(textY);
+
+        List<TextPosition> textList = charactersByArticle.get(getArticleIndex(textX, textY));
+        if (textList.isEmpty()) {
+            textList.add(text);
+            return;
+        }
+        TextPosition previousTextPosition = textList.get(textList.size() - 1);
+        if (text.isDiacritic() && previousTextPosition.contains(text)) {
+            previousTextPosition.mergeDiacritic(text);
+        } else if (previousTextPosition.isDiacritic() && text.contains(previousTextPosition)) {
+            text.mergeDiacritic(previousTextPosition);
+            textList.remove(textList.size() - 1);
+            textList.add(text);
+        } else {
+            textList.add(text);
+        }
+    }
+
+    private int getArticleIndex(float x, float y) {
+        int foundArticleDivisionIndex = -1;
+        int notFoundButFirstLeftAndAboveArticleDivisionIndex = -1;
+        int notFoundButFirstLeftArticleDivisionIndex = -1;
+        int notFoundButFirstAboveArticleDivisionIndex = -1;
+        for (int i = 0; i < beadRectangles.size() && foundArticleDivisionIndex == -1; i++) {
+            PDRectangle rect = beadRectangles.get(i);
+            if (rect != null) {
+                if (rect.contains(x, y)) {
+                    foundArticleDivisionIndex = i * 2 + 1;
+                } else if ((x < rect.getLowerLeftX() || y < rect.getUpperRightY())
+                        && notFoundButFirstLeftAndAboveArticleDivisionIndex == -1) {
+                    notFoundButFirstLeftAndAboveArticleDivisionIndex = i * 2;
+                } else if (x < rect.getLowerLeftX() && notFoundButFirstLeftArticleDivisionIndex == -1) {
+                    notFoundButFirstLeftArticleDivisionIndex = i * 2;
+                } else if (y < rect.getUpperRightY() && notFoundButFirstAboveArticleDivisionIndex == -1) {
+                    notFoundButFirstAboveArticleDivisionIndex = i * 2;
+                }
+            } else {
+                foundArticleDivisionIndex = 0;
+            }
+        }
+        if (foundArticleDivisionIndex != -1) {
+            return foundArticleDivisionIndex;
+        } else if (notFoundButFirstLeftAndAboveArticleDivisionIndex != -1) {
+            return notFoundButFirstLeftAndAboveArticleDivisionIndex;
+        } else if (notFoundButFirstLeftArticleDivisionIndex != -1) {
+            return notFoundButFirstLeftArticleDivisionIndex;
+        } else if (notFoundButFirstAboveArticleDivisionIndex != -1) {
+            return notFoundButFirstAboveArticleDivisionIndex;
+        }
+        return charactersByArticle.size() - 1;
+    }
+
+    /**
+     * The thread bead rectangles of the page in glyph coordinates, null for beads without one.
+     */
+    private static List<PDRectangle> getBeadRectangles(PDPage page) {
+        List<PDRectangle> beadRectangles = new ArrayList<>();
+        for (PDThreadBead bead : page.getThreadBeads()) {
+            if (bead == null || bead.getRectangle() == null) {
+                beadRectangles.add(null);
+                continue;
+            }
+
+            // bead rectangles are in PDF coordinates (y=0 is bottom), glyphs have y=0 at the top
+            PDRectangle rect = bead.getRectangle();
+            PDRectangle mediaBox = page.getMediaBox();
+            float upperRightY = mediaBox.getUpperRightY() - rect.getLowerLeftY();
+            float lowerLeftY = mediaBox.getUpperRightY() - rect.getUpperRightY();
+            rect.setLowerLeftY(lowerLeftY);
+            rect.setUpperRightY(upperRightY);
+
+            PDRectangle cropBox = page.getCropBox();
+            if (cropBox.getLowerLeftX() != 0 || cropBox.getLowerLeftY() != 0) {
+                rect.setLowerLeftX(rect.getLowerLeftX() - cropBox.getLowerLeftX());
+                rect.setLowerLeftY(rect.getLowerLeftY() - cropBox.getLowerLeftY());
+                rect.setUpperRightX(rect.getUpperRightX() - cropBox.getLowerLeftX());
+                rect.setUpperRightY(rect.getUpperRightY() - cropBox.getLowerLeftY());
             }
+            beadRectangles.add(rect);
         }
+        return beadRectangles;
+    }
+
+    private static GlyphList loadGlyphList() {
+        try (InputStream input = GlyphList.class.getResourceAsStream("/org/apache/pdfbox/resources/glyphlist/additional.txt")) {
+            return new GlyphList(GlyphList.getAdobeGlyphList(), input);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public List<TextElement> getTextElements() {
+        return textElements.getTextElements();
+    }
+
+    void sortTextElements(Comparator<? super TextElement> comparator) {
+        textElements.getTextElements().sortElements(comparator);
+    }
+
+    public RectangleSpatialIndex<TextElement> getSpatialIndex() {
+        return textElements.getSpatialIndex();
+    }
+
+    public float getMinCharWidth() {
+        return textElements.getMinCharWidth();
+    }
+
+    public float getMinCharHeight() {
+        return textElements.getMinCharHeight();
+    }
+
+    /**
+     * @return how many rulings were left out because the page had as many as its policy allows by the time
+     * they were drawn
+     */
+    int getDroppedRulingCount() {
+        return droppedRulingCount;
     }
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
@@ -242,9 +768,25 @@ class ObjectExtractorStreamEngine extends PDFGraphicsStreamEngine {
     }
 
     public Rectangle2D currentClippingPath() {
+        return (Rectangle2D) currentClippingPathBounds().clone();
+    }
+
+    /**
+     * The page space bounds of the current clipping path, transformed again only when the path changed.
+     * <p>
+     * A saved graphics state shares its clipping path until the first intersection replaces it with
+     * a copy; later intersections in the same state change that copy in place. PDFBox only clips
+     * fresh states (to form, pattern and annotation boxes), so the in-place changes are those made
+     * by {@link #endPath()}, which resets the cache.
+     */
+    private Rectangle2D currentClippingPathBounds() {
         Shape currentClippingPath = getGraphicsState().getCurrentClippingPath();
-        Shape transformedClippingPath = getPageTransform().createTransformedShape(currentClippingPath);
-        return transformedClippingPath.getBounds2D();
+        if (currentClippingPath != boundedClippingPath) {
+            Shape transformedClippingPath = getPageTransform().createTransformedShape(currentClippingPath);
+            clippingPathBounds = transformedClippingPath.getBounds2D();
+            boundedClippingPath = currentClippingPath;
+        }
+        return clippingPathBounds;
     }
 
     // TODO: repeated in SpreadsheetExtractionAlgorithm.
@@ -0,0 +1,368 @@
+package technology.tabula;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link RectangleSpatialIndex} over the text of a page, packed in one go on its first query, and packed
+ * again on the next query after a rectangle is added.
+ * <p>
+ * The rectangles are sorted into reading order ({@link Rectangle#ILL_DEFINED_ORDER}) once, and cut into blocks of
+ * consecutive rectangles with their bounds. A query only looks at the run of blocks that can reach its range and
+ * collects what they contain as it goes, so results come out in reading order without being sorted again. As the
+ * order isn't transitive, that is the order the rectangles take on the page as a whole, which can differ from
+ * sorting just the ones found.
+ */
+final class PackedRectangleSpatialIndex<T extends Rectangle> extends RectangleSpatialIndex<T> {
+
+    // consecutive rectangles per block
+    private static final int BLOCK_SIZE = 64;
+
+    private List<? extends T> source;
+    private GlyphBuffer glyphs;
+
+    // rectangles in reading order, with the bounds Rectangle keeps as floats
+    private List<T> rectangles;
+    private float[] xs, ys, widths, heights;
+
+    // bounds of every block
+    private double[] blockMinXs, blockMaxXs, blockMinYs, blockMaxYs;
+    // the largest bottom of the blocks up to each block, and the smallest top from each block on, so the blocks
+    // that can reach a range of tops and bottoms are a contiguous run
+    private double[] bottomsSoFar, topsFromHere;
+
+    /**
+     * @param rectangles read on the first query, not copied
+     */
+    PackedRectangleSpatialIndex(List<? extends T> rectangles) {
+        this.source = rectangles;
+    }
+
+    /**
+     * An index over the glyphs of a page that reads their bounds from the arrays of {@code glyphs}, so only
+     * the glyphs a query returns get an element.
+     *
+     * @param glyphs read on the first query, not copied
+     */
+    static PackedRectangleSpatialIndex<TextElement> of(GlyphBuffer glyphs) {
+        PackedRectangleSpatialIndex<TextElement> rv = new PackedRectangleSpatialIndex<>(null);
+        rv.glyphs = glyphs;
+        return rv;
+    }
+
+    @Override
+    public synchronized void add(T te) {
+        ensureBuilt();
+        List<T> all = new ArrayList<>(rectangles);
+        all.add(te);
+        source = all;
+        rectangles = null;
+    }
+
+    @Override
+    public List<T> contains(Rectangle r) {
+        ensureBuilt();
+        List<T> rv = new ArrayList<>();
+        if (r.isEmpty()) {
+            return rv;
+        }
+        // same arithmetic as Rectangle2D#contains(Rectangle2D)
+        double left = r.getX(), top = r.getY();
+        double right = left + r.getWidth(), bottom = top + r.getHeight();
+
+        for (int b = firstBlockReaching(top), last = lastBlockReaching(bottom); b <= last; b++) {
+            if (blockMaxXs[b] < left || blockMinXs[b] > right || blockMaxYs[b] < top || blockMinYs[b] > bottom) {
+                continue;
+            }
+            for (int position = b * BLOCK_SIZE, end = blockEnd(b); position < end; position++) {
+                if (widths[position] > 0 && heights[position] > 0
+                        && xs[position] >= left && (double) xs[position] + widths[position] <= right
+                        && ys[position] >= top && (double) ys[position] + heights[position] <= bottom) {
+                    rv.add(rectangles.get(position));
+                }
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Sorts every rectangle into the areas containing it in a single pass: the areas are spread over a grid
+     * and each rectangle only checks the areas covering the grid cell of its top left corner.
+     */
+    @Override
+    public List<List<T>> contains(List<? extends Rectangle> areas) {
+        ensureBuilt();
+        int areaCount = areas.size();
+        double[] areaLefts = new double[areaCount], areaTops = new double[areaCount];
+        double[] areaRights = new double[areaCount], areaBottoms = new double[areaCount];
+        boolean[] searched = new boolean[areaCount];
+        double gridLeft = Double.POSITIVE_INFINITY, gridTop = Double.POSITIVE_INFINITY;
+        double gridRight = Double.NEGATIVE_INFINITY, gridBottom = Double.NEGATIVE_INFINITY;
+        for (int a = 0; a < areaCount; a++) {
+            Rectangle area = areas.get(a);
+            // same arithmetic as Rectangle2D#contains(Rectangle2D); areas without any room can't contain anything
+            areaLefts[a] = area.getX();
+            areaTops[a] = area.getY();
+            areaRights[a] = areaLefts[a] + area.getWidth();
+            areaBottoms[a] = areaTops[a] + area.getHeight();
+            searched[a] = !area.isEmpty() && areaLefts[a] < areaRights[a] && areaTops[a] < areaBottoms[a];
+            if (searched[a]) {
+                gridLeft = Math.min(gridLeft, areaLefts[a]);
+                gridTop = Math.min(gridTop, areaTops[a]);
+                gridRight = Math.max(gridRight, areaRights[a]);
+                gridBottom = Math.max(gridBottom, areaBottoms[a]);
+            }
+        }
+
+        List<List<T>> rv = new ArrayList<>(areaCount);
+        for (int a = 0; a < areaCount; a++) {
+            rv.add(new ArrayList<T>());
+        }
+        if (gridLeft > gridRight) {
+            return rv;
+        }
+        if (Double.isInfinite(gridLeft) || Double.isInfinite(gridTop) || Double.isInfinite(gridRight) || Double.isInfinite(gridBottom)) {
+            return super.contains(areas);
+        }
+
+        int gridSize = Math.max(1, (int) Math.sqrt(areaCount));
+        double columnWidth = gridRight > gridLeft ? (gridRight - gridLeft) / gridSize : 1;
+        double rowHeight = gridBottom > gridTop ? (gridBottom - gridTop) / gridSize : 1;
+
+        // the areas covering every grid cell, by grid cell
+        int[] gridStarts = new int[gridSize * gridSize + 1];
+        int[][] areaGridRanges = new int[areaCount][];
+        for (int a = 0; a < areaCount; a++) {
+            if (!searched[a]) {
+                continue;
+            }
+            int[] range = areaGridRanges[a] = new int[] {
+                    gridIndex(areaLefts[a], gridLeft, columnWidth, gridSize), gridIndex(areaTops[a], gridTop, rowHeight, gridSize),
+                    gridIndex(areaRights[a], gridLeft, columnWidth, gridSize), gridIndex(areaBottoms[a], gridTop, rowHeight, gridSize) };
+            for (int row = range[1]; row <= range[3]; row++) {
+                for (int column = range[0]; column <= range[2]; column++) {
+                    gridStarts[row * gridSize + column + 1]++;
+                }
+            }
+        }
+        for (int g = 0; g < gridSize * gridSize; g++) {
+            gridStarts[g + 1] += gridStarts[g];
+        }
+        int[] gridAreas = new int[gridStarts[gridSize * gridSize]];
+        int[] next = Arrays.copyOf(gridStarts, gridSize * gridSize);
+        for (int a = 0; a < areaCount; a++) {
+            int[] range = areaGridRanges[a];
+            if (range == null) {
+                continue;
+            }
+            for (int row = range[1]; row <= range[3]; row++) {
+                for (int column = range[0]; column <= range[2]; column++) {
+                    gridAreas[next[row * gridSize + column]++] = a;
+                }
+            }
+        }
+
+        sortIntoAreas(gridStarts, gridAreas, gridLeft, gridTop, columnWidth, rowHeight, gridSize,
+                areaLefts, areaTops, areaRights, areaBottoms, rv);
+        return rv;
+    }
+
+    private void sortIntoAreas(int[] gridStarts, int[] gridAreas, double gridLeft, double gridTop,
+                               double columnWidth, double rowHeight, int gridSize,
+                               double[] areaLefts, double[] areaTops, double[] areaRights, double[] areaBottoms,
+                               List<List<T>> rv) {
+        // in reading order, so every area gets its rectangles in the order a single query would find them
+        for (int position = 0; position < rectangles.size(); position++) {
+            double x = xs[position], y = ys[position];
+            if (!(widths[position] > 0 && heights[position] > 0)) {
+                continue;
+            }
+            int g = gridIndex(y, gridTop, rowHeight, gridSize) * gridSize + gridIndex(x, gridLeft, columnWidth, gridSize);
+            for (int i = gridStarts[g]; i < gridStarts[g + 1]; i++) {
+                int a = gridAreas[i];
+                if (x >= areaLefts[a] && x + (double) widths[position] <= areaRights[a]
+                        && y >= areaTops[a] && y + (double) heights[position] <= areaBottoms[a]) {
+                    rv.get(a).add(rectangles.get(position));
+                }
+            }
+        }
+    }
+
+    private static int gridIndex(double coordinate, double start, double step, int gridSize) {
+        return Math.max(0, Math.min(gridSize - 1, (int) Math.floor((coordinate - start) / step)));
+    }
+
+    @Override
+    public List<T> intersects(Rectangle r) {
+        ensureBuilt();
+        double minX = Math.min(r.getLeft(), r.getRight()), maxX = Math.max(r.getLeft(), r.getRight());
+        double minY = Math.min(r.getTop(), r.getBottom()), maxY = Math.max(r.getTop(), r.getBottom());
+
+        List<T> rv = new ArrayList<>();
+        for (int b = firstBlockReaching(minY), last = lastBlockReaching(maxY); b <= last; b++) {
+            if (blockMaxXs[b] < minX || blockMinXs[b] > maxX || blockMaxYs[b] < minY || blockMinYs[b] > maxY) {
+                continue;
+            }
+            for (int position = b * BLOCK_SIZE, end = blockEnd(b); position < end; position++) {
+                float left = xs[position], right = right(position), top = ys[position], bottom = bottom(position);
+                if (Math.min(left, right) <= maxX && Math.max(left, right) >= minX
+                        && Math.min(top, bottom) <= maxY && Math.max(top, bottom) >= minY) {
+                    rv.add(rectangles.get(position));
+                }
+            }
+        }
+        return rv;
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        ensureBuilt();
+        return Rectangle.boundingBoxOf(rectangles);
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
+    private synchronized void ensureBuilt() {
+        if (rectangles != null) {
+            return;
+        }
+        if (glyphs != null) {
+            packGlyphs();
+        } else {
+            packSource();
+        }
+        int size = rectangles.size();
+
+        int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockMinXs = new double[blockCount];
+        blockMaxXs = new double[blockCount];
+        blockMinYs = new double[blockCount];
+        blockMaxYs = new double[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            blockMinXs[b] = blockMinYs[b] = Double.POSITIVE_INFINITY;
+            blockMaxXs[b] = blockMaxYs[b] = Double.NEGATIVE_INFINITY;
+            for (int i = b * BLOCK_SIZE, end = Math.min(size, i + BLOCK_SIZE); i < end; i++) {
+                float right = right(i), bottom = bottom(i);
+                blockMinXs[b] = Math.min(blockMinXs[b], Math.min(xs[i], right));
+                blockMaxXs[b] = Math.max(blockMaxXs[b], Math.max(xs[i], right));
+                blockMinYs[b] = Math.min(blockMinYs[b], Math.min(ys[i], bottom));
+                blockMaxYs[b] = Math.max(blockMaxYs[b], Math.max(ys[i], bottom));
+            }
+        }
+        bottomsSoFar = new double[blockCount];
+        topsFromHere = new double[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            bottomsSoFar[b] = b == 0 ? blockMaxYs[b] : Math.max(bottomsSoFar[b - 1], blockMaxYs[b]);
+        }
+        for (int b = blockCount - 1; b >= 0; b--) {
+            topsFromHere[b] = b == blockCount - 1 ? blockMinYs[b] : Math.min(topsFromHere[b + 1], blockMinYs[b]);
+        }
+    }
+
+    private void packSource() {
+        List<T> sorted = new ArrayList<T>(source);
+        Utils.sort(sorted, Rectangle.ILL_DEFINED_ORDER);
+        source = null;
+
+        allocate(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            T rectangle = sorted.get(i);
+            xs[i] = rectangle.x;
+            ys[i] = rectangle.y;
+            widths[i] = rectangle.width;
+            heights[i] = rectangle.height;
+        }
+        rectangles = sorted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void packGlyphs() {
+        final GlyphBuffer packed = glyphs;
+        glyphs = null;
+        if (packed.isInReadingOrder()) {
+            allocate(packed.size());
+            for (int i = 0; i < packed.size(); i++) {
+                xs[i] = packed.getLeft(i);
+                ys[i] = packed.getTop(i);
+                widths[i] = packed.getWidth(i);
+                heights[i] = packed.getHeight(i);
+            }
+            rectangles = (List<T>) packed;
+            return;
+        }
+
+        final int[] order = packed.readingOrder();
+        allocate(order.length);
+        for (int i = 0; i < order.length; i++) {
+            xs[i] = packed.getLeft(order[i]);
+            ys[i] = packed.getTop(order[i]);
+            widths[i] = packed.getWidth(order[i]);
+            heights[i] = packed.getHeight(order[i]);
+        }
+        rectangles = (List<T>) new AbstractList<TextElement>() {
+            @Override
+            public TextElement get(int index) {
+                return packed.get(order[index]);
+            }
+
+            @Override
+            public int size() {
+                return order.length;
+            }
+        };
+    }
+
+    private void allocate(int size) {
+        xs = new float[size];
+        ys = new float[size];
+        widths = new float[size];
+        heights = new float[size];
+    }
+
+    // as Rectangle#getRight and Rectangle#getBottom, which go through doubles
+    private float right(int position) {
+        return (float) ((double) xs[position] + widths[position]);
+    }
+
+    private float bottom(int position) {
+        return (float) ((double) ys[position] + heights[position]);
+    }
+
+    private int blockEnd(int block) {
+        return Math.min(rectangles.size(), (block + 1) * BLOCK_SIZE);
+    }
+
+    /**
+     * @return the first block that may reach down to {@code top}: no rectangle before it does
+     */
+    private int firstBlockReaching(double top) {
+        int low = 0, high = bottomsSoFar.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (bottomsSoFar[middle] < top) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the last block that may reach up to {@code bottom}: no rectangle after it does
+     */
+    private int lastBlockReaching(double bottom) {
+        int low = 0, high = topsFromHere.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (topsFromHere[middle] <= bottom) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+}
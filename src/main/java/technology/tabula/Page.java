@@ -23,11 +23,9 @@ public class Page extends Rectangle {
 
     private List<TextElement> textElements;
 
-    // TODO: Create a class for 'List <Ruling>' that encapsulates all of these lists and their behaviors?
-    private List<Ruling> rulings,
-            cleanRulings = null,
-            verticalRulingLines = null,
-            horizontalRulingLines = null;
+    private List<Ruling> rulings;
+    private RulingSet cleanRulings;
+    private int droppedRulingCount;
 
     private PDPage pdPage;
     private PDDocument pdDoc;
@@ -46,7 +44,8 @@ public class Page extends Rectangle {
             List<Ruling> rulings,
             float minCharWidth,
             float minCharHeight,
-            RectangleSpatialIndex<TextElement> index
+            RectangleSpatialIndex<TextElement> index,
+            int droppedRulingCount
     ) {
         super(pageDims.getTop(), pageDims.getLeft(), pageDims.getWidth(), pageDims.getHeight());
         this.rotation = rotation;
@@ -58,6 +57,7 @@ public class Page extends Rectangle {
         this.minCharWidth = minCharWidth;
         this.minCharHeight = minCharHeight;
         this.spatialIndex = index;
+        this.droppedRulingCount = droppedRulingCount;
     }
 
   /**
@@ -129,6 +129,7 @@ public class Page extends Rectangle {
                 .withMinCharWidth(minimumCharWidth)
                 .withMinCharHeight(minimumCharHeight)
                 .withIndex(spatialIndex)
+                .withDroppedRulingCount(droppedRulingCount)
                 .build();
 
         addBorderRulingsTo(page);
@@ -200,6 +201,14 @@ public class Page extends Rectangle {
         return spatialIndex.contains(area);
     }
 
+    /**
+     * The text inside each of {@code areas}, as {@link #getText(Rectangle)} would return it,
+     * looked up in one go.
+     */
+    public List<List<TextElement>> getText(List<? extends Rectangle> areas) {
+        return spatialIndex.contains(areas);
+    }
+
     /**
      * @deprecated use {@linkplain #getText(Rectangle)} instead
      */
@@ -238,63 +247,31 @@ public class Page extends Rectangle {
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
     public List<Ruling> getRulings() {
-        if (cleanRulings != null) {
-            return cleanRulings;
-        }
-
         if (rulings == null || rulings.isEmpty()) {
-            verticalRulingLines = new ArrayList<>();
-            horizontalRulingLines = new ArrayList<>();
             return new ArrayList<>();
         }
-
-        // TODO: Move as a static method to the Ruling class?
-        Utils.snapPoints(rulings, minCharWidth, minCharHeight);
-
-        verticalRulingLines = getCollapsedVerticalRulings();
-        horizontalRulingLines = getCollapsedHorizontalRulings();
-
-        cleanRulings = new ArrayList<>(verticalRulingLines);
-        cleanRulings.addAll(horizontalRulingLines);
-
-        return cleanRulings;
+        return getRulingSet().getRulings();
     }
 
-    // TODO: Create a class for 'List <Ruling>' and encapsulate these behaviors within it?
-    private List<Ruling> getCollapsedVerticalRulings() {
-        List<Ruling> verticalRulings = new ArrayList<>();
-        for (Ruling ruling : rulings) {
-            if (ruling.vertical()) {
-                verticalRulings.add(ruling);
-            }
+    /**
+     * @return the rulings of this page, snapped and collapsed, by orientation
+     */
+    public RulingSet getRulingSet() {
+        if (rulings == null || rulings.isEmpty()) {
+            return new RulingSet(new ArrayList<Ruling>(), minCharWidth, minCharHeight);
         }
-        return Ruling.collapseOrientedRulings(verticalRulings);
-    }
-
-    private List<Ruling> getCollapsedHorizontalRulings() {
-        List<Ruling> horizontalRulings = new ArrayList<>();
-        for (Ruling ruling : rulings) {
-            if (ruling.horizontal()) {
-                horizontalRulings.add(ruling);
-            }
+        if (cleanRulings == null) {
+            cleanRulings = new RulingSet(rulings, minCharWidth, minCharHeight);
         }
-        return Ruling.collapseOrientedRulings(horizontalRulings);
+        return cleanRulings;
     }
 
     public List<Ruling> getVerticalRulings() {
-        if (verticalRulingLines != null) {
-            return verticalRulingLines;
-        }
-        getRulings();
-        return verticalRulingLines;
+        return getRulingSet().getVerticals();
     }
 
     public List<Ruling> getHorizontalRulings() {
-        if (horizontalRulingLines != null) {
-            return horizontalRulingLines;
-        }
-        getRulings();
-        return horizontalRulingLines;
+        return getRulingSet().getHorizontals();
     }
 
     public void addRuling(Ruling ruling) {
@@ -303,8 +280,6 @@ public class Page extends Rectangle {
         }
         rulings.add(ruling);
         // Clear caches:
-        verticalRulingLines = null;
-        horizontalRulingLines = null;
         cleanRulings = null;
     }
 
@@ -312,6 +287,14 @@ public class Page extends Rectangle {
         return rulings;
     }
 
+    /**
+     * @return how many rulings of the whole page were left out because it had more than its
+     * {@link RulingIngestionPolicy} allows
+     */
+    public int getDroppedRulingCount() {
+        return droppedRulingCount;
+    }
+
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
     public PDPage getPDPage() {
         return pdPage;
@@ -342,6 +325,7 @@ public class Page extends Rectangle {
         private float minCharWidth;
         private float minCharHeight;
         private RectangleSpatialIndex<TextElement> index;
+        private int droppedRulingCount;
 
         private Builder() {}
 
@@ -409,8 +393,15 @@ public class Page extends Rectangle {
             return this;
         }
 
+        public Builder withDroppedRulingCount(int droppedRulingCount) {
+            this.droppedRulingCount = droppedRulingCount;
+
+            return this;
+        }
+
         public Page build() {
-            return new Page(pageDims, rotation, number, pdPage, pdDocument, textElements, rulings, minCharWidth, minCharHeight, index);
+            return new Page(pageDims, rotation, number, pdPage, pdDocument, textElements, rulings, minCharWidth, minCharHeight, index,
+                    droppedRulingCount);
         }
     }
 }
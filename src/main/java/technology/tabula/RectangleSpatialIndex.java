@@ -31,6 +31,17 @@ public class RectangleSpatialIndex<T extends Rectangle> {
         return rv;
     }
     
+    /**
+     * The rectangles contained in each of {@code areas}, in the order {@link #contains(Rectangle)} returns them.
+     */
+    public List<List<T>> contains(List<? extends Rectangle> areas) {
+        List<List<T>> rv = new ArrayList<>(areas.size());
+        for (Rectangle area: areas) {
+            rv.add(contains(area));
+        }
+        return rv;
+    }
+
     public List<T> intersects(Rectangle r) {
       return si.query(new Envelope(r.getLeft(), r.getRight(), r.getTop(), r.getBottom()));
     }
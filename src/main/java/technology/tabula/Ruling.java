@@ -4,6 +4,7 @@ import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Formatter;
@@ -162,15 +163,37 @@ public class Ruling extends Line2D.Float {
         boolean rv = false;
         
         if (this.perpendicularTo(another)) {
-            rv = this.expand(PERPENDICULAR_PIXEL_EXPAND_AMOUNT).intersectsLine(another);
+            rv = this.expandsInPlace(PERPENDICULAR_PIXEL_EXPAND_AMOUNT)
+                    ? expandedLinesIntersect(another, 0, this, PERPENDICULAR_PIXEL_EXPAND_AMOUNT)
+                    : this.expand(PERPENDICULAR_PIXEL_EXPAND_AMOUNT).intersectsLine(another);
         }
         else {
-            rv = this.expand(colinearOrParallelExpandAmount)
-                    .intersectsLine(another.expand(colinearOrParallelExpandAmount));
+            rv = this.expandsInPlace(colinearOrParallelExpandAmount) && another.expandsInPlace(colinearOrParallelExpandAmount)
+                    ? expandedLinesIntersect(another, colinearOrParallelExpandAmount, this, colinearOrParallelExpandAmount)
+                    : this.expand(colinearOrParallelExpandAmount)
+                        .intersectsLine(another.expand(colinearOrParallelExpandAmount));
         }
         
         return rv;
     }
+
+    /**
+     * Whether {@link #expand(float)} just lengthens this ruling by {@code amount} at both ends,
+     * so that the expanded copy need not be made to test against it.
+     */
+    private boolean expandsInPlace(float amount) {
+        return amount >= 1 && this.vertical() != this.horizontal() && this.getStart() <= this.getEnd();
+    }
+
+    // l.expand(lAmount).intersectsLine(... r.expand(rAmount)), for rulings that expand in place
+    private static boolean expandedLinesIntersect(Ruling r, float rAmount, Ruling l, float lAmount) {
+        boolean rVertical = r.vertical(), lVertical = l.vertical();
+        return Line2D.linesIntersect(
+                rVertical ? r.x1 : r.x1 - rAmount, rVertical ? r.y1 - rAmount : r.y1,
+                rVertical ? r.x2 : r.x2 + rAmount, rVertical ? r.y2 + rAmount : r.y2,
+                lVertical ? l.x1 : l.x1 - lAmount, lVertical ? l.y1 - lAmount : l.y1,
+                lVertical ? l.x2 : l.x2 + lAmount, lVertical ? l.y2 + lAmount : l.y2);
+    }
     
     public double length() {
         return Math.sqrt(Math.pow(this.x1 - this.x2, 2) + Math.pow(this.y1 - this.y2, 2));
@@ -302,45 +325,51 @@ public class Ruling extends Line2D.Float {
     // log(n) implementation of find_intersections
     // based on http://people.csail.mit.edu/indyk/6.838-old/handouts/lec2.pdf
     public static Map<Point2D, Ruling[]> findIntersections(List<Ruling> horizontals, List<Ruling> verticals) {
+        return findIntersectionPoints(horizontals, verticals).toMap();
+    }
+
+    /**
+     * Finds the same intersections as {@link #findIntersections(List, List)}, without building a map.
+     * <p>
+     * Active horizontals are kept by top, so each vertical only visits those its span can reach.
+     */
+    public static RulingIntersections findIntersectionPoints(List<Ruling> horizontals, List<Ruling> verticals) {
         
         class SortObject {
             protected SOType type;
             protected float position;
-            protected Ruling ruling;
+            protected int index;
             
-            public SortObject(SOType type, float position, Ruling ruling) {
+            public SortObject(SOType type, float position, int index) {
                 this.type = type;
                 this.position = position;
-                this.ruling = ruling;
+                this.index = index;
             }
         }
         
         List<SortObject> sos = new ArrayList<>();
-        
-        TreeMap<Ruling, Boolean> tree = new TreeMap<>(new Comparator<Ruling>() {
-            @Override
-            public int compare(Ruling o1, Ruling o2) {
-                return java.lang.Double.compare(o1.getTop(), o2.getTop());
-            }});
-        
-        TreeMap<Point2D, Ruling[]> rv = new TreeMap<>(new Comparator<Point2D>() {
-            @Override
-            public int compare(Point2D o1, Point2D o2) {
-                if (o1.getY() > o2.getY()) return  1;
-                if (o1.getY() < o2.getY()) return -1;
-                if (o1.getX() > o2.getX()) return  1;
-                if (o1.getX() < o2.getX()) return -1;
-                return 0;
+
+        // horizontals by top; like a map keyed by getTop(), the first of several at one top stays
+        TreeMap<java.lang.Float, Integer> tree = new TreeMap<>();
+
+        // how far a horizontal, once expanded, can reach above or below its top
+        float reach = PERPENDICULAR_PIXEL_EXPAND_AMOUNT;
+        boolean scanAll = false;
+        for (int i = 0; i < horizontals.size(); i++) {
+            Ruling h = horizontals.get(i);
+            sos.add(new SortObject(SOType.HLEFT, h.getLeft() - PERPENDICULAR_PIXEL_EXPAND_AMOUNT, i));
+            sos.add(new SortObject(SOType.HRIGHT, h.getRight() + PERPENDICULAR_PIXEL_EXPAND_AMOUNT, i));
+            float slant = Math.abs(h.getBottom() - h.getTop());
+            if (java.lang.Float.isNaN(slant) || java.lang.Float.isInfinite(slant)) {
+                scanAll = true;
+            }
+            else {
+                reach = Math.max(reach, slant + PERPENDICULAR_PIXEL_EXPAND_AMOUNT);
             }
-        });
-        
-        for (Ruling h : horizontals) {
-            sos.add(new SortObject(SOType.HLEFT, h.getLeft() - PERPENDICULAR_PIXEL_EXPAND_AMOUNT, h));
-            sos.add(new SortObject(SOType.HRIGHT, h.getRight() + PERPENDICULAR_PIXEL_EXPAND_AMOUNT, h));
         }
 
-        for (Ruling v : verticals) {
-            sos.add(new SortObject(SOType.VERTICAL, v.getLeft(), v));
+        for (int i = 0; i < verticals.size(); i++) {
+            sos.add(new SortObject(SOType.VERTICAL, verticals.get(i).getLeft(), i));
         }
         
         Collections.sort(sos, new Comparator<SortObject>() {
@@ -370,30 +399,55 @@ public class Ruling extends Line2D.Float {
                 return rv;
             }
         });
+
+        Ruling[] expandedHorizontals = new Ruling[horizontals.size()];
+        Ruling[] expandedVerticals = new Ruling[verticals.size()];
+        RulingIntersections.Builder rv = new RulingIntersections.Builder(expandedHorizontals, expandedVerticals);
         
         for (SortObject so : sos) {
             switch(so.type) {
             case VERTICAL:
-                for (Map.Entry<Ruling, Boolean> h : tree.entrySet()) {
-                    Point2D i = h.getKey().intersectionPoint(so.ruling);
-                    if (i == null) {
+                if (tree.isEmpty()) {
+                    break;
+                }
+                Ruling v = verticals.get(so.index).expand(PERPENDICULAR_PIXEL_EXPAND_AMOUNT);
+                expandedVerticals[so.index] = v;
+                float lo = Math.min(v.getTop(), v.getBottom()) - reach;
+                float hi = Math.max(v.getTop(), v.getBottom()) + reach;
+                Map<java.lang.Float, Integer> reachable = scanAll || java.lang.Float.isNaN(lo) || java.lang.Float.isNaN(hi)
+                        ? tree : tree.subMap(Math.nextDown(lo), true, Math.nextUp(hi), true);
+                for (int hIndex : reachable.values()) {
+                    Ruling h = expandedHorizontals[hIndex];
+                    if (h == null) {
+                        h = expandedHorizontals[hIndex] = horizontals.get(hIndex).expand(PERPENDICULAR_PIXEL_EXPAND_AMOUNT);
+                    }
+                    if (!h.intersectsLine(v)) {
                         continue;
                     }
-                    rv.put(i, 
-                           new Ruling[] { h.getKey().expand(PERPENDICULAR_PIXEL_EXPAND_AMOUNT), 
-                                          so.ruling.expand(PERPENDICULAR_PIXEL_EXPAND_AMOUNT) });
+                    if (h.horizontal() && v.vertical()) {
+                        rv.add(v.getLeft(), h.getTop(), hIndex, so.index);
+                    }
+                    else if (h.vertical() && v.horizontal()) {
+                        rv.add(h.getLeft(), v.getTop(), hIndex, so.index);
+                    }
+                    else {
+                        throw new IllegalArgumentException("lines must be orthogonal, vertical and horizontal");
+                    }
                 }
                 break;
             case HRIGHT:
-                tree.remove(so.ruling);
+                tree.remove(horizontals.get(so.index).getTop());
                 break;
             case HLEFT:
-                tree.put(so.ruling, true);
+                java.lang.Float top = horizontals.get(so.index).getTop();
+                if (!tree.containsKey(top)) {
+                    tree.put(top, so.index);
+                }
                 break;
             }
         }
         
-        return rv;
+        return rv.build();
         
     }
 
@@ -403,18 +457,12 @@ public class Ruling extends Line2D.Float {
     
     public static List<Ruling> collapseOrientedRulings(List<Ruling> lines, int expandAmount) {
         ArrayList<Ruling> rv = new ArrayList<>();
-        Collections.sort(lines, new Comparator<Ruling>() {
-            @Override
-            public int compare(Ruling a, Ruling b) {
-                final float diff = a.getPosition() - b.getPosition();
-                return java.lang.Float.compare(diff == 0 ? a.getStart() - b.getStart() : diff, 0f);
-            }
-        });
+        sortByPositionAndStart(lines);
 
         for (Ruling next_line : lines) {
             Ruling last = rv.isEmpty() ? null : rv.get(rv.size() - 1);
             // if current line colinear with next, and are "close enough": expand current line
-            if (last != null && Utils.feq(next_line.getPosition(), last.getPosition()) && last.nearlyIntersects(next_line, expandAmount)) {
+            if (last != null && mergeable(last, next_line, expandAmount)) {
                 final float lastStart = last.getStart();
                 final float lastEnd = last.getEnd();
 
@@ -439,4 +487,58 @@ public class Ruling extends Line2D.Float {
         }
         return rv;
     }
+
+    /**
+     * Whether {@link #collapseOrientedRulings(List)} would leave these rulings as they are:
+     * already in order, with no two neighbours to merge.
+     */
+    static boolean isCollapsed(List<Ruling> lines) {
+        for (Ruling line : lines) {
+            if (line.oblique() || line.length() == 0) {
+                return false;
+            }
+        }
+        for (int i = 1; i < lines.size(); i++) {
+            Ruling last = lines.get(i - 1), next = lines.get(i);
+            if (compareByPositionAndStart(next.getPosition(), next.getStart(), last.getPosition(), last.getStart()) < 0
+                    || mergeable(last, next, COLINEAR_OR_PARALLEL_PIXEL_EXPAND_AMOUNT)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean mergeable(Ruling last, Ruling next, int expandAmount) {
+        return Utils.feq(next.getPosition(), last.getPosition()) && last.nearlyIntersects(next, expandAmount);
+    }
+
+    // sorts in place, reading each ruling's position and start once
+    private static void sortByPositionAndStart(List<Ruling> lines) {
+        if (lines.size() < 2) {
+            return;
+        }
+        Ruling[] sorted = lines.toArray(new Ruling[0]);
+        final float[] positions = new float[sorted.length];
+        final float[] starts = new float[sorted.length];
+        Integer[] order = new Integer[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            positions[i] = sorted[i].getPosition();
+            starts[i] = sorted[i].getStart();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareByPositionAndStart(positions[a], starts[a], positions[b], starts[b]);
+            }
+        });
+        for (int i = 0; i < sorted.length; i++) {
+            lines.set(i, sorted[order[i]]);
+        }
+    }
+
+    private static int compareByPositionAndStart(float positionA, float startA, float positionB, float startB) {
+        final float diff = positionA - positionB;
+        return java.lang.Float.compare(diff == 0 ? startA - startB : diff, 0f);
+    }
 }
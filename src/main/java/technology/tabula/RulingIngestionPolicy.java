@@ -0,0 +1,104 @@
+package technology.tabula;
+
+/**
+ * Which of the line segments painted on a page {@link ObjectExtractor} keeps as rulings.
+ * <p>
+ * The {@link #DEFAULT} policy keeps every segment longer than {@value #DEFAULT_MINIMUM_LENGTH} that
+ * intersects the clipping path, up to {@value #DEFAULT_MAXIMUM_RULINGS} per page. Pages with maps, charts
+ * or drawings can paint hundreds of thousands of segments; a stricter policy drops the ones that cannot be
+ * table borders while the page is read, and the ruling budget bounds the work left for the lattice extraction.
+ */
+public final class RulingIngestionPolicy {
+
+    public static final float DEFAULT_MINIMUM_LENGTH = 0.01f;
+
+    // ten times the rulings of the densest page in the test corpus
+    public static final int DEFAULT_MAXIMUM_RULINGS = 20000;
+
+    public static final RulingIngestionPolicy DEFAULT = Builder.newInstance().build();
+
+    private final float minimumLength;
+    private final boolean dropOblique;
+    private final boolean dropDuplicates;
+    private final int maximumRulings;
+
+    private RulingIngestionPolicy(Builder builder) {
+        this.minimumLength = builder.minimumLength;
+        this.dropOblique = builder.dropOblique;
+        this.dropDuplicates = builder.dropDuplicates;
+        this.maximumRulings = builder.maximumRulings;
+    }
+
+    /**
+     * @return the length a ruling must exceed, after clipping, to be kept
+     */
+    public float getMinimumLength() {
+        return minimumLength;
+    }
+
+    /**
+     * @return whether segments that are neither horizontal nor vertical are dropped
+     */
+    public boolean dropsOblique() {
+        return dropOblique;
+    }
+
+    /**
+     * @return whether a ruling with the same endpoints as one already kept on the page is dropped
+     */
+    public boolean dropsDuplicates() {
+        return dropDuplicates;
+    }
+
+    /**
+     * @return how many rulings a page keeps at most; the ones drawn after the page has that many are left out
+     */
+    public int getMaximumRulings() {
+        return maximumRulings;
+    }
+
+    public static class Builder {
+        private float minimumLength = DEFAULT_MINIMUM_LENGTH;
+        private boolean dropOblique;
+        private boolean dropDuplicates;
+        private int maximumRulings = DEFAULT_MAXIMUM_RULINGS;
+
+        private Builder() {}
+
+        public static Builder newInstance() {
+            return new Builder();
+        }
+
+        public Builder withMinimumLength(float minimumLength) {
+            this.minimumLength = minimumLength;
+
+            return this;
+        }
+
+        public Builder withObliqueDropped(boolean dropOblique) {
+            this.dropOblique = dropOblique;
+
+            return this;
+        }
+
+        public Builder withDuplicatesDropped(boolean dropDuplicates) {
+            this.dropDuplicates = dropDuplicates;
+
+            return this;
+        }
+
+        public Builder withMaximumRulings(int maximumRulings) {
+            if (maximumRulings < 0) {
+                throw new IllegalArgumentException("maximumRulings must not be negative");
+            }
+            this.maximumRulings = maximumRulings;
+
+            return this;
+        }
+
+        public RulingIngestionPolicy build() {
+            return new RulingIngestionPolicy(this);
+        }
+    }
+
+}
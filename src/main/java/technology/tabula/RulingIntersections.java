@@ -0,0 +1,182 @@
+package technology.tabula;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The points where horizontal and vertical rulings cross, ordered by y and then by x.
+ * <p>
+ * Each point refers to the crossing rulings by index; the rulings it returns are the expanded
+ * copies {@link Ruling#intersectionPoint(Ruling)} tests with, shared by all the points on them.
+ */
+public final class RulingIntersections {
+
+    private static final Comparator<Point2D> POINT_ORDER = new Comparator<Point2D>() {
+        @Override
+        public int compare(Point2D o1, Point2D o2) {
+            if (o1.getY() > o2.getY()) return  1;
+            if (o1.getY() < o2.getY()) return -1;
+            if (o1.getX() > o2.getX()) return  1;
+            if (o1.getX() < o2.getX()) return -1;
+            return 0;
+        }
+    };
+
+    private final float[] xs;
+    private final float[] ys;
+    private final int[] horizontalIndices;
+    private final int[] verticalIndices;
+    private final Ruling[] horizontals;
+    private final Ruling[] verticals;
+
+    private RulingIntersections(float[] xs, float[] ys, int[] horizontalIndices, int[] verticalIndices,
+                                Ruling[] horizontals, Ruling[] verticals) {
+        this.xs = xs;
+        this.ys = ys;
+        this.horizontalIndices = horizontalIndices;
+        this.verticalIndices = verticalIndices;
+        this.horizontals = horizontals;
+        this.verticals = verticals;
+    }
+
+    public int size() {
+        return xs.length;
+    }
+
+    public float getX(int i) {
+        return xs[i];
+    }
+
+    public float getY(int i) {
+        return ys[i];
+    }
+
+    /** The expanded horizontal ruling crossing at the i-th point. */
+    public Ruling getHorizontal(int i) {
+        return horizontals[horizontalIndices[i]];
+    }
+
+    /** The expanded vertical ruling crossing at the i-th point. */
+    public Ruling getVertical(int i) {
+        return verticals[verticalIndices[i]];
+    }
+
+    /**
+     * @return the position of the point at (x, y), or -1 if the rulings do not cross there
+     */
+    public int indexOf(float x, float y) {
+        int low = 0;
+        int high = xs.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(xs[mid], ys[mid], x, y);
+            if (c < 0) {
+                low = mid + 1;
+            }
+            else if (c > 0) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the points mapped to their {horizontal, vertical} rulings, as returned by
+     *         {@link Ruling#findIntersections(java.util.List, java.util.List)}
+     */
+    public Map<Point2D, Ruling[]> toMap() {
+        TreeMap<Point2D, Ruling[]> rv = new TreeMap<>(POINT_ORDER);
+        for (int i = 0; i < xs.length; i++) {
+            rv.put(new Point2D.Float(xs[i], ys[i]), new Ruling[] { getHorizontal(i), getVertical(i) });
+        }
+        return rv;
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
+    // same order as POINT_ORDER, with NaN placed last so that sorting stays consistent
+    private static int compare(float x1, float y1, float x2, float y2) {
+        int rv = compare(y1, y2);
+        return rv != 0 ? rv : compare(x1, x2);
+    }
+
+    private static int compare(float a, float b) {
+        if (a > b) return  1;
+        if (a < b) return -1;
+        return Boolean.compare(Float.isNaN(a), Float.isNaN(b));
+    }
+
+    /**
+     * Collects crossings in the order they are found. Of several crossings at one point, the
+     * coordinates of the first and the rulings of the last are kept, like repeated map puts do.
+     */
+    static final class Builder {
+        private final Ruling[] horizontals;
+        private final Ruling[] verticals;
+        private float[] xs = new float[16];
+        private float[] ys = new float[16];
+        private int[] horizontalIndices = new int[16];
+        private int[] verticalIndices = new int[16];
+        private int size;
+
+        Builder(Ruling[] horizontals, Ruling[] verticals) {
+            this.horizontals = horizontals;
+            this.verticals = verticals;
+        }
+
+        void add(float x, float y, int horizontalIndex, int verticalIndex) {
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+                horizontalIndices = Arrays.copyOf(horizontalIndices, size * 2);
+                verticalIndices = Arrays.copyOf(verticalIndices, size * 2);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            horizontalIndices[size] = horizontalIndex;
+            verticalIndices[size] = verticalIndex;
+            size++;
+        }
+
+        RulingIntersections build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            // stable, so crossings at one point stay in the order they were found
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return RulingIntersections.compare(xs[a], ys[a], xs[b], ys[b]);
+                }
+            });
+
+            float[] sortedXs = new float[size];
+            float[] sortedYs = new float[size];
+            int[] sortedHorizontals = new int[size];
+            int[] sortedVerticals = new int[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int o = order[i];
+                if (n > 0 && RulingIntersections.compare(sortedXs[n - 1], sortedYs[n - 1], xs[o], ys[o]) == 0) {
+                    n--;
+                }
+                else {
+                    sortedXs[n] = xs[o];
+                    sortedYs[n] = ys[o];
+                }
+                sortedHorizontals[n] = horizontalIndices[o];
+                sortedVerticals[n] = verticalIndices[o];
+                n++;
+            }
+            return new RulingIntersections(Arrays.copyOf(sortedXs, n), Arrays.copyOf(sortedYs, n),
+                    Arrays.copyOf(sortedHorizontals, n), Arrays.copyOf(sortedVerticals, n), horizontals, verticals);
+        }
+    }
+
+}
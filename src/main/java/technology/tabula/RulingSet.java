@@ -0,0 +1,170 @@
+package technology.tabula;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rulings of a page, with their endpoints snapped together and the colinear ones merged,
+ * split into horizontal and vertical rulings.
+ * <p>
+ * The merged rulings are the page's own {@link Ruling} objects, changed in place.
+ */
+public final class RulingSet {
+
+    private final List<Ruling> rulings;
+    private final List<Ruling> horizontals;
+    private final List<Ruling> verticals;
+    private Boolean collapsed;
+
+    /**
+     * Snaps the endpoints of {@code rulings} that are less than the thresholds apart, then merges
+     * the colinear ones that (nearly) touch.
+     */
+    public RulingSet(List<Ruling> rulings, float xThreshold, float yThreshold) {
+        if (rulings.isEmpty()) {
+            this.horizontals = new ArrayList<>();
+            this.verticals = new ArrayList<>();
+            this.rulings = new ArrayList<>();
+            return;
+        }
+        snapPoints(rulings, xThreshold, yThreshold);
+
+        List<Ruling> horizontalRulings = new ArrayList<>();
+        List<Ruling> verticalRulings = new ArrayList<>();
+        for (Ruling ruling : rulings) {
+            if (ruling.vertical()) {
+                verticalRulings.add(ruling);
+            }
+            if (ruling.horizontal()) {
+                horizontalRulings.add(ruling);
+            }
+        }
+        this.verticals = Ruling.collapseOrientedRulings(verticalRulings);
+        this.horizontals = Ruling.collapseOrientedRulings(horizontalRulings);
+
+        this.rulings = new ArrayList<>(verticals);
+        this.rulings.addAll(horizontals);
+    }
+
+    /**
+     * @return the vertical rulings followed by the horizontal ones
+     */
+    public List<Ruling> getRulings() {
+        return rulings;
+    }
+
+    public List<Ruling> getHorizontals() {
+        return horizontals;
+    }
+
+    public List<Ruling> getVerticals() {
+        return verticals;
+    }
+
+    /**
+     * Whether splitting {@link #getRulings()} by orientation and collapsing each part again gives
+     * back {@link #getHorizontals()} and {@link #getVerticals()} unchanged, so that doing so can be skipped.
+     */
+    public boolean isCollapsed() {
+        if (collapsed == null) {
+            collapsed = splitsBackIntoParts() && Ruling.isCollapsed(horizontals) && Ruling.isCollapsed(verticals);
+        }
+        return collapsed;
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
+    /**
+     * Moves line endpoints that are closer than {@code xThreshold} horizontally (and then those
+     * closer than {@code yThreshold} vertically) to the average of their coordinates.
+     * <p>
+     * Endpoints are grouped in coordinate order with the first of their group. The endpoint
+     * coming last in that order is left where it is.
+     */
+    public static void snapPoints(List<? extends Line2D.Float> lines, float xThreshold, float yThreshold) {
+        int pointCount = lines.size() * 2;
+        if (pointCount == 0) {
+            return;
+        }
+        // point 2i is the start of line i, point 2i + 1 its end
+        float[] xs = new float[pointCount];
+        float[] ys = new float[pointCount];
+        for (int i = 0; i < lines.size(); i++) {
+            Line2D.Float line = lines.get(i);
+            xs[2 * i] = line.x1;
+            ys[2 * i] = line.y1;
+            xs[2 * i + 1] = line.x2;
+            ys[2 * i + 1] = line.y2;
+        }
+
+        int[] points = new int[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            points[i] = i;
+        }
+        points = sortedBy(xs, points);
+        snap(xs, points, xThreshold);
+        points = sortedBy(ys, points);
+        snap(ys, points, yThreshold);
+
+        for (int i = 0; i < lines.size(); i++) {
+            lines.get(i).setLine(xs[2 * i], ys[2 * i], xs[2 * i + 1], ys[2 * i + 1]);
+        }
+    }
+
+    // stable sort of points by coordinate
+    private static int[] sortedBy(float[] coordinates, int[] points) {
+        long[] keys = new long[points.length];
+        for (int i = 0; i < points.length; i++) {
+            int bits = java.lang.Float.floatToIntBits(coordinates[points[i]]);
+            // order the bits like Float.compare orders the values
+            bits ^= (bits >> 31) & 0x7fffffff;
+            keys[i] = ((long) bits << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] rv = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            rv[i] = points[(int) keys[i]];
+        }
+        return rv;
+    }
+
+    private static void snap(float[] coordinates, int[] points, float threshold) {
+        int end = points.length - 1;
+        int groupStart = 0;
+        while (groupStart < end) {
+            int groupEnd = groupStart + 1;
+            while (groupEnd < end
+                    && Math.abs((double) coordinates[points[groupEnd]] - coordinates[points[groupStart]]) < threshold) {
+                groupEnd++;
+            }
+            float avgLoc = 0;
+            for (int i = groupStart; i < groupEnd; i++) {
+                avgLoc += coordinates[points[i]];
+            }
+            avgLoc /= groupEnd - groupStart;
+            for (int i = groupStart; i < groupEnd; i++) {
+                coordinates[points[i]] = avgLoc;
+            }
+            groupStart = groupEnd;
+        }
+    }
+
+    private boolean splitsBackIntoParts() {
+        int h = 0, v = 0;
+        for (Ruling ruling : rulings) {
+            if (ruling.horizontal()) {
+                if (h == horizontals.size() || horizontals.get(h++) != ruling) {
+                    return false;
+                }
+            }
+            else if (ruling.vertical()) {
+                if (v == verticals.size() || verticals.get(v++) != ruling) {
+                    return false;
+                }
+            }
+        }
+        return h == horizontals.size() && v == verticals.size();
+    }
+
+}
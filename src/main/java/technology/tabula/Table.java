@@ -1,8 +1,9 @@
 package technology.tabula;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.TreeMap;
 
 import technology.tabula.extractors.ExtractionAlgorithm;
 
@@ -24,7 +25,10 @@ public class Table extends Rectangle {
 	private int rowCount = 0;
 	private int colCount = 0;
 
-	/* visible for testing */ final TreeMap<CellPosition, RectangularTextContainer> cells = new TreeMap<>();
+	// the cells by column and then by row, null where empty. A column is null until it has a cell, and is
+	// otherwise rowCapacity long
+	private RectangularTextContainer[][] columns = new RectangularTextContainer[0][];
+	private int rowCapacity = 0;
 
 	public int getRowCount() { return rowCount; }
 	public int getColCount() { return colCount; }
@@ -33,70 +37,102 @@ public class Table extends Rectangle {
 
 	public void add(RectangularTextContainer chunk, int row, int col) {
 		this.merge(chunk);
-		
+
 		rowCount = Math.max(rowCount, row + 1);
 		colCount = Math.max(colCount, col + 1);
-		
-		CellPosition cp = new CellPosition(row, col);
-		
-		RectangularTextContainer old = cells.get(cp);
-		if (old != null) chunk.merge(old);
-		cells.put(cp, chunk);
 
-		this.memoizedRows = null;
+		RectangularTextContainer[] column = column(col, row + 1);
+		RectangularTextContainer old = column[row];
+		if (old != null) chunk.merge(old);
+		column[row] = chunk;
 	}
 
-	private List<List<RectangularTextContainer>> memoizedRows = null;
+	/**
+	 * Adds the cells of a row at once, as {@link #add(RectangularTextContainer, int, int)} would one by one, for a
+	 * row that has no cells yet. The cells are in column order, with {@code null} where a column is empty.
+	 */
+	public void addRow(int row, RectangularTextContainer[] rowCells) {
+		for (int col = 0; col < rowCells.length; col++) {
+			RectangularTextContainer cell = rowCells[col];
+			if (cell == null) continue;
 
-	public List<List<RectangularTextContainer>> getRows() {
-		if (this.memoizedRows == null) this.memoizedRows = computeRows();
-		return this.memoizedRows;
-	}
+			this.merge(cell);
 
-	private List<List<RectangularTextContainer>> computeRows() {
-		List<List<RectangularTextContainer>> rows = new ArrayList<>();
-		for (int i = 0; i < rowCount; i++) {
-			List<RectangularTextContainer> lastRow = new ArrayList<>();
-			rows.add(lastRow);
-			for (int j = 0; j < colCount; j++) {
-				RectangularTextContainer cell = cells.get(new CellPosition(i,j)); // JAVA_8 use getOrDefault()
-				lastRow.add(cell != null ? cell : TextChunk.EMPTY);
-			}
+			rowCount = Math.max(rowCount, row + 1);
+			colCount = Math.max(colCount, col + 1);
+
+			column(col, row + 1)[row] = cell;
 		}
-		return rows;
-	}
-	
-	public RectangularTextContainer getCell(int i, int j) {
-		RectangularTextContainer cell = cells.get(new CellPosition(i,j)); // JAVA_8 use getOrDefault()
-		return cell != null ? cell : TextChunk.EMPTY;
 	}
 
-}
-
-class CellPosition implements Comparable<CellPosition> {
-
-	CellPosition(int row, int col) {
-		this.row = row;
-		this.col = col;
+	/**
+	 * @return the column {@code col}, at least {@code rows} long
+	 */
+	private RectangularTextContainer[] column(int col, int rows) {
+		if (rows > rowCapacity) {
+			rowCapacity = Math.max(rows, rowCapacity * 2);
+			for (int j = 0; j < columns.length; j++) {
+				if (columns[j] != null) columns[j] = Arrays.copyOf(columns[j], rowCapacity);
+			}
+		}
+		if (col >= columns.length) {
+			columns = Arrays.copyOf(columns, Math.max(col + 1, columns.length * 2));
+		}
+		if (columns[col] == null) {
+			columns[col] = new RectangularTextContainer[rowCapacity];
+		}
+		return columns[col];
 	}
 
-	final int row, col;
+	/**
+	 * @return the rows of the table, each as long as the widest one, with {@link TextChunk#EMPTY} for the empty
+	 * cells. These are read-only views of the table rather than copies of its cells.
+	 */
+	public List<List<RectangularTextContainer>> getRows() {
+		return new AbstractList<List<RectangularTextContainer>>() {
+			@Override
+			public List<RectangularTextContainer> get(final int i) {
+				if (i < 0 || i >= rowCount) throw new IndexOutOfBoundsException("row " + i);
+				return new AbstractList<RectangularTextContainer>() {
+					@Override
+					public RectangularTextContainer get(int j) {
+						if (j < 0 || j >= colCount) throw new IndexOutOfBoundsException("column " + j);
+						return getCell(i, j);
+					}
+
+					@Override
+					public int size() {
+						return colCount;
+					}
+				};
+			}
 
-	@Override public int hashCode() {
-		return row + 101 * col;
+			@Override
+			public int size() {
+				return rowCount;
+			}
+		};
 	}
 
-	@Override public boolean equals(Object obj) {
-		if (this == obj) return true;
-		if (obj == null) return false;
-		if (getClass() != obj.getClass()) return false;
-		CellPosition other = (CellPosition) obj;
-		return row == other.row && col == other.col;
+	public RectangularTextContainer getCell(int i, int j) {
+		RectangularTextContainer cell = null;
+		if (i >= 0 && i < rowCapacity && j >= 0 && j < columns.length && columns[j] != null) {
+			cell = columns[j][i];
+		}
+		return cell != null ? cell : TextChunk.EMPTY;
 	}
 
-	@Override public int compareTo(CellPosition other) {
-		int rowdiff = row - other.row;
-		return rowdiff != 0 ? rowdiff : col - other.col;
+	/**
+	 * @return the cells that are not empty, row by row
+	 */
+	/* visible for testing */ List<RectangularTextContainer> cells() {
+		List<RectangularTextContainer> cells = new ArrayList<>();
+		for (int i = 0; i < rowCount; i++) {
+			for (int j = 0; j < colCount; j++) {
+				if (columns[j] != null && columns[j][i] != null) cells.add(columns[j][i]);
+			}
+		}
+		return cells;
 	}
 
 }
@@ -1,6 +1,7 @@
 package technology.tabula;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.pdfbox.pdmodel.font.PDFont;
@@ -122,12 +123,11 @@ public class TextElement extends Rectangle implements HasText {
             return textChunks;
         }
 
-        // it's a problem that this `remove` is side-effecty
-        // other things depend on `textElements` and it can sometimes lead to the first textElement in textElement
-        // not appearing in the final output because it's been removed here.
+        // don't remove the first element from `textElements` itself: other things depend on it
+        // and the first textElement would go missing from the final output.
         // https://github.com/tabulapdf/tabula-java/issues/78
-        List<TextElement> copyOfTextElements = new ArrayList<>(textElements);
-        textChunks.add(new TextChunk(copyOfTextElements.remove(0)));
+        Iterator<TextElement> remainingTextElements = textElements.iterator();
+        textChunks.add(new TextChunk(remainingTextElements.next()));
         TextChunk firstTC = textChunks.get(0);
 
         float previousAveCharWidth = (float) firstTC.getWidth();
@@ -142,7 +142,8 @@ public class TextElement extends Rectangle implements HasText {
         TextChunk currentChunk;
         boolean sameLine, acrossVerticalRuling;
 
-        for (TextElement chr : copyOfTextElements) {
+        while (remainingTextElements.hasNext()) {
+            TextElement chr = remainingTextElements.next();
             currentChunk = textChunks.get(textChunks.size() - 1);
             prevChar = currentChunk.textElements.get(currentChunk.textElements.size() - 1);
 
@@ -0,0 +1,154 @@
+package technology.tabula;
+
+import java.io.IOException;
+import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * Turns the glyphs of a page into {@link TextElement}s, skipping unprintable characters
+ * and blank glyphs that would throw off the row height calculation.
+ * Shared by {@link TextStripper} and {@link ObjectExtractorStreamEngine}.
+ */
+class TextElementCollector {
+
+    private static final String NBSP = "\u00A0";
+    private static final float AVG_HEIGHT_MULT_THRESHOLD = 6.0f;
+    private static final float MAX_BLANK_FONT_SIZE = 40.0f;
+    private static final float MIN_BLANK_FONT_SIZE = 2.0f;
+
+    private final GlyphBuffer textElements = new GlyphBuffer();
+    private RectangleSpatialIndex<TextElement> spatialIndex;
+    private float minCharWidth = Float.MAX_VALUE;
+    private float minCharHeight = Float.MAX_VALUE;
+    private float totalHeight = 0.0f;
+    private int countHeight = 0;
+
+    void add(TextPosition textPosition) {
+        String c = textPosition.getUnicode();
+
+        // if c not printable, return
+        if (!isPrintable(c)) {
+            return;
+        }
+
+        Float h = textPosition.getHeightDir();
+
+        if (c.equals(NBSP)) { // replace non-breaking space for space
+            c = " ";
+        }
+
+        float wos = textPosition.getWidthOfSpace();
+
+        float top = Utils.round(textPosition.getYDirAdj() - h, 2);
+        float left = Utils.round(textPosition.getXDirAdj(), 2);
+        float width = Utils.round(textPosition.getWidthDirAdj(), 2);
+        float height = Utils.round(textPosition.getHeightDir(), 2);
+
+        this.minCharWidth = (float) Math.min(this.minCharWidth, (double) width);
+        this.minCharHeight = (float) Math.min(this.minCharHeight, (double) height);
+
+        countHeight++;
+        totalHeight += (double) height;
+        float avgHeight = totalHeight / countHeight;
+
+        //We have an issue where tall blank cells throw off the row height calculation
+        //Introspect a blank cell a bit here to see if it should be thrown away
+        if (c.trim().equals("")) {
+            //if the cell height is more than AVG_HEIGHT_MULT_THRESHOLDxaverage, throw it away
+            if (avgHeight > 0
+                    && (double) height >= (avgHeight * AVG_HEIGHT_MULT_THRESHOLD)) {
+                return;
+            }
+
+            //if the font size is outside of reasonable ranges, throw it away
+            if (textPosition.getFontSizeInPt() > MAX_BLANK_FONT_SIZE || textPosition.getFontSizeInPt() < MIN_BLANK_FONT_SIZE) {
+                return;
+            }
+        }
+
+        // workaround a possible bug in PDFBox: https://issues.apache.org/jira/browse/PDFBOX-1755
+        this.textElements.add(top, left, width, height, textPosition.getFont(), textPosition.getFontSizeInPt(), c,
+                wos, textPosition.getDir());
+    }
+
+    /**
+     * The glyph height used for {@link TextPosition}s: half the font bounding box,
+     * or the cap height or ascent/descent when those are smaller.
+     */
+    static float computeFontHeight(PDFont font) throws IOException {
+        BoundingBox bbox = font.getBoundingBox();
+        if (bbox.getLowerLeftY() < Short.MIN_VALUE) {
+            // PDFBOX-2158 and PDFBOX-3130
+            // files by Salmat eSolutions / ClibPDF Library
+            bbox.setLowerLeftY(- (bbox.getLowerLeftY() + 65536));
+        }
+        // 1/2 the bbox is used as the height todo: why?
+        float glyphHeight = bbox.getHeight() / 2;
+
+        // sometimes the bbox has very high values, but CapHeight is OK
+        PDFontDescriptor fontDescriptor = font.getFontDescriptor();
+        if (fontDescriptor != null) {
+            float capHeight = fontDescriptor.getCapHeight();
+            if (Float.compare(capHeight, 0) != 0 &&
+                    (capHeight < glyphHeight || Float.compare(glyphHeight, 0) == 0)) {
+                glyphHeight = capHeight;
+            }
+            // PDFBOX-3464, PDFBOX-448:
+            // sometimes even CapHeight has very high value, but Ascent and Descent are ok
+            float ascent = fontDescriptor.getAscent();
+            float descent = fontDescriptor.getDescent();
+            if (ascent > 0 && descent < 0 &&
+                    ((ascent - descent) / 2 < glyphHeight || Float.compare(glyphHeight, 0) == 0)) {
+                glyphHeight = (ascent - descent) / 2;
+            }
+        }
+
+        // transformPoint from glyph space -> text space
+        float height;
+        if (font instanceof PDType3Font) {
+            height = font.getFontMatrix().transformPoint(0, glyphHeight).y;
+        } else {
+            height = glyphHeight / 1000;
+        }
+
+        return height;
+    }
+
+    private static boolean isPrintable(String s) {
+        Character c;
+        Character.UnicodeBlock block;
+        boolean printable = false;
+        for (int i = 0; i < s.length(); i++) {
+            c = s.charAt(i);
+            block = Character.UnicodeBlock.of(c);
+            printable |= !Character.isISOControl(c) && block != null && block != Character.UnicodeBlock.SPECIALS;
+        }
+        return printable;
+    }
+
+    GlyphBuffer getTextElements() {
+        return textElements;
+    }
+
+    /**
+     * The index over the collected elements, packed from the glyph arrays on its first query
+     * so only the glyphs it returns get an element.
+     */
+    RectangleSpatialIndex<TextElement> getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = PackedRectangleSpatialIndex.of(textElements);
+        }
+        return spatialIndex;
+    }
+
+    float getMinCharWidth() {
+        return minCharWidth;
+    }
+
+    float getMinCharHeight() {
+        return minCharHeight;
+    }
+}
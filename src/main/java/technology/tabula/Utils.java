@@ -2,7 +2,6 @@ package technology.tabula;
 
 import java.awt.Shape;
 import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -38,7 +37,29 @@ public class Utils {
         return (Math.abs(f1 - f2) < EPSILON);
     }
 
+    private static final double[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+    private static final float[] FLOAT_POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+    // scaled values below this are exact as floats, and far larger than the error of scaling in double precision
+    private static final double FAST_ROUND_LIMIT = 1 << 22;
+    private static final double TIE_TOLERANCE = 1e-6;
+
+    /**
+     * Rounds half up to {@code decimalPlace} decimals of the decimal representation of {@code d}
+     * ({@link Double#toString(double)}). Counts whole units of the last decimal in a long, and only
+     * goes through {@link BigDecimal} when {@code d} is too close to a tie to tell from its scaled value.
+     */
     public static float round(double d, int decimalPlace) {
+        if (decimalPlace >= 0 && decimalPlace < POWERS_OF_TEN.length) {
+            double scaled = Math.abs(d * POWERS_OF_TEN[decimalPlace]);
+            if (scaled < FAST_ROUND_LIMIT) {
+                double floor = Math.floor(scaled);
+                double fraction = scaled - floor;
+                if (Math.abs(fraction - 0.5) > TIE_TOLERANCE) {
+                    long units = (long) floor + (fraction > 0.5 ? 1 : 0);
+                    return (d < 0 ? -units : units) / FLOAT_POWERS_OF_TEN[decimalPlace];
+                }
+            }
+        }
         BigDecimal bd = new BigDecimal(Double.toString(d));
         bd = bd.setScale(decimalPlace, BigDecimal.ROUND_HALF_UP);
         return bd.floatValue();
@@ -188,87 +209,7 @@ public class Utils {
     }
 
     public static void snapPoints(List<? extends Line2D.Float> rulings, float xThreshold, float yThreshold) {
-
-        // collect points and keep a Line -> p1,p2 map
-        Map<Line2D.Float, Point2D[]> linesToPoints = new HashMap<>();
-        List<Point2D> points = new ArrayList<>();
-        for (Line2D.Float r : rulings) {
-            Point2D p1 = r.getP1();
-            Point2D p2 = r.getP2();
-            linesToPoints.put(r, new Point2D[]{p1, p2});
-            points.add(p1);
-            points.add(p2);
-        }
-
-        // snap by X
-        Collections.sort(points, new Comparator<Point2D>() {
-            @Override
-            public int compare(Point2D arg0, Point2D arg1) {
-                return java.lang.Double.compare(arg0.getX(), arg1.getX());
-            }
-        });
-
-        List<List<Point2D>> groupedPoints = new ArrayList<>();
-        groupedPoints.add(new ArrayList<>(Arrays.asList(new Point2D[]{points.get(0)})));
-
-        for (Point2D p : points.subList(1, points.size() - 1)) {
-            List<Point2D> last = groupedPoints.get(groupedPoints.size() - 1);
-            if (Math.abs(p.getX() - last.get(0).getX()) < xThreshold) {
-                groupedPoints.get(groupedPoints.size() - 1).add(p);
-            } else {
-                groupedPoints.add(new ArrayList<>(Arrays.asList(new Point2D[]{p})));
-            }
-        }
-
-        for (List<Point2D> group : groupedPoints) {
-            float avgLoc = 0;
-            for (Point2D p : group) {
-                avgLoc += p.getX();
-            }
-            avgLoc /= group.size();
-            for (Point2D p : group) {
-                p.setLocation(avgLoc, p.getY());
-            }
-        }
-        // ---
-
-        // snap by Y
-        Collections.sort(points, new Comparator<Point2D>() {
-            @Override
-            public int compare(Point2D arg0, Point2D arg1) {
-                return java.lang.Double.compare(arg0.getY(), arg1.getY());
-            }
-        });
-
-        groupedPoints = new ArrayList<>();
-        groupedPoints.add(new ArrayList<>(Arrays.asList(new Point2D[]{points.get(0)})));
-
-        for (Point2D p : points.subList(1, points.size() - 1)) {
-            List<Point2D> last = groupedPoints.get(groupedPoints.size() - 1);
-            if (Math.abs(p.getY() - last.get(0).getY()) < yThreshold) {
-                groupedPoints.get(groupedPoints.size() - 1).add(p);
-            } else {
-                groupedPoints.add(new ArrayList<>(Arrays.asList(new Point2D[]{p})));
-            }
-        }
-
-        for (List<Point2D> group : groupedPoints) {
-            float avgLoc = 0;
-            for (Point2D p : group) {
-                avgLoc += p.getY();
-            }
-            avgLoc /= group.size();
-            for (Point2D p : group) {
-                p.setLocation(p.getX(), avgLoc);
-            }
-        }
-        // ---
-
-        // finally, modify lines
-        for (Map.Entry<Line2D.Float, Point2D[]> ltp : linesToPoints.entrySet()) {
-            Point2D[] p = ltp.getValue();
-            ltp.getKey().setLine(p[0], p[1]);
-        }
+        RulingSet.snapPoints(rulings, xThreshold, yThreshold);
     }
 
 	public static BufferedImage pageConvertToImage(PDPage page, int dpi, ImageType imageType) throws IOException {
@@ -0,0 +1,429 @@
+package technology.tabula.detectors;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.rendering.PageDrawer;
+import org.apache.pdfbox.rendering.PageDrawerParameters;
+import org.apache.pdfbox.rendering.RenderDestination;
+
+import technology.tabula.detectors.NurminenDetectionAlgorithm.ImageRendering;
+
+/**
+ * Renders pages for {@link NurminenDetectionAlgorithm}, with or without their text, and with their images
+ * drawn as {@link ImageRendering} asks.
+ * <p>
+ * Text is left out while the page is drawn, by a page drawer that ignores the text-showing operators,
+ * so the page is neither parsed into tokens nor written to a new document first.
+ * <p>
+ * Pages can also be rendered a region at a time: {@link #findContentRegions(int, float)} looks at an image of
+ * the page at a quarter of the resolution for the parts of the page where something is drawn, and
+ * {@link #renderGrayRegion(int, float, Rectangle, boolean)} renders only those, so a large page that is mostly
+ * blank doesn't need an image as large as the page.
+ */
+class DetectionRenderer extends PDFRenderer {
+
+    // page images up to this many pixels are rendered whole, looking for regions in them costs more than it saves
+    private static final long REGION_SEARCH_PIXELS_MINIMUM = 1 << 22;
+    // the coarse image is rendered at 1/4 of the resolution asked for
+    private static final int COARSE_SCALE = 4;
+    // side of the tiles the coarse image is divided into, in coarse pixels
+    private static final int TILE_SIZE = 8;
+    // more regions than this are rendered as the one region around all of them
+    private static final int MAXIMUM_REGIONS = 8;
+    // regions covering more of the page than this are rendered as the whole page
+    private static final double MAXIMUM_REGION_COVERAGE = 0.75;
+
+    // shapes thinner than this, in pixels, can be lost in the coarse image
+    private static final double THIN_SHAPE_MAXIMUM = 2;
+    // width of the line thin shapes are traced with, in pixels
+    private static final float TRACE_WIDTH = 1.5f;
+
+    // what images are replaced with when they are not decoded
+    private static final Color IMAGE_BOUNDING_BOX_COLOR = Color.GRAY;
+
+    private final ImageRendering imageRendering;
+    private boolean textSuppressed;
+    private boolean thinShapesTraced;
+
+    DetectionRenderer(PDDocument document, ImageRendering imageRendering) {
+        super(document);
+        this.imageRendering = imageRendering;
+    }
+
+    /**
+     * @return whether this renders pages of {@code document}
+     */
+    boolean renders(PDDocument document) {
+        return this.document == document;
+    }
+
+    /**
+     * @return whether the document this renders pages of has been closed since
+     */
+    boolean rendersClosedDocument() {
+        return document.getDocument().isClosed();
+    }
+
+    /**
+     * @param withText false to leave out everything drawn by text-showing operators
+     */
+    BufferedImage renderGrayImage(int pageIndex, float dpi, boolean withText) throws IOException {
+        textSuppressed = !withText;
+        try {
+            return renderImageWithDPI(pageIndex, dpi, ImageType.GRAY);
+        } finally {
+            textSuppressed = false;
+        }
+    }
+
+    /**
+     * Renders the part of the page image at {@code dpi} within {@code region}, with the same pixels the image of
+     * the whole page has there.
+     *
+     * @param region in pixels of the page image at {@code dpi}
+     * @param withText false to leave out everything drawn by text-showing operators
+     */
+    BufferedImage renderGrayRegion(int pageIndex, float dpi, Rectangle region, boolean withText) throws IOException {
+        if (region.equals(pageBounds(pageIndex, dpi))) {
+            return renderGrayImage(pageIndex, dpi, withText);
+        }
+        BufferedImage image = new BufferedImage(region.width, region.height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        textSuppressed = !withText;
+        try {
+            graphics.setBackground(Color.WHITE);
+            graphics.clearRect(0, 0, region.width, region.height);
+            graphics.translate(-region.x, -region.y);
+            renderPageToGraphics(pageIndex, graphics, dpi / 72f, dpi / 72f, RenderDestination.EXPORT);
+        } finally {
+            textSuppressed = false;
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Finds the parts of the page image at {@code dpi} where something is drawn, text included.
+     * <p>
+     * Every region is surrounded by a margin that is blank in the coarse image, so no edge of the page image
+     * crosses from one region into another, and the edges found in the regions are those of the whole image.
+     *
+     * Page images no larger than A3 at 144 DPI are one region, as they are.
+     *
+     * @return disjoint regions, in pixels of the page image at {@code dpi}, none if the page is blank
+     */
+    List<Rectangle> findContentRegions(int pageIndex, float dpi) throws IOException {
+        Rectangle page = pageBounds(pageIndex, dpi);
+        if ((long) page.width * page.height <= REGION_SEARCH_PIXELS_MINIMUM) {
+            List<Rectangle> regions = new ArrayList<>(1);
+            regions.add(page);
+            return regions;
+        }
+        BufferedImage coarse;
+        thinShapesTraced = true;
+        try {
+            coarse = renderImageWithDPI(pageIndex, dpi / COARSE_SCALE, ImageType.GRAY);
+        } finally {
+            thinShapesTraced = false;
+        }
+
+        int columns = (coarse.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (coarse.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+        boolean[] content = findContentTiles(coarse.getRaster(), columns, rows);
+
+        // the tiles around those with content are part of the region too, as its blank margin
+        boolean[] grown = new boolean[content.length];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                if (content[row * columns + column]) {
+                    for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                        for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                            grown[r * columns + c] = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Rectangle> tileRegions = mergeOverlapping(connectedTiles(grown, columns, rows));
+        if (tileRegions.isEmpty()) {
+            return tileRegions;
+        }
+
+        int tilePixels = TILE_SIZE * COARSE_SCALE;
+        List<Rectangle> regions = new ArrayList<>(tileRegions.size());
+        Rectangle union = null;
+        long area = 0;
+        for (Rectangle tiles : tileRegions) {
+            // the coarse image can end a few pixels before the page image does
+            int right = tiles.x + tiles.width == columns ? page.width : (tiles.x + tiles.width) * tilePixels;
+            int bottom = tiles.y + tiles.height == rows ? page.height : (tiles.y + tiles.height) * tilePixels;
+            Rectangle region = new Rectangle(tiles.x * tilePixels, tiles.y * tilePixels,
+                    right - tiles.x * tilePixels, bottom - tiles.y * tilePixels).intersection(page);
+            if (region.isEmpty()) {
+                continue;
+            }
+            regions.add(region);
+            area += (long) region.width * region.height;
+            union = union == null ? region : union.union(region);
+        }
+
+        if (union == null) {
+            return regions;
+        }
+        if (area > MAXIMUM_REGION_COVERAGE * page.width * page.height) {
+            regions.clear();
+            regions.add(page);
+        } else if (regions.size() > MAXIMUM_REGIONS) {
+            regions.clear();
+            regions.add(union);
+        }
+        return regions;
+    }
+
+    /**
+     * The bounds of the image {@link #renderImageWithDPI(int, float)} makes of the page.
+     */
+    private Rectangle pageBounds(int pageIndex, float dpi) {
+        PDPage page = document.getPage(pageIndex);
+        PDRectangle cropBox = page.getCropBox();
+        float scale = dpi / 72f;
+        int width = (int) Math.max(Math.floor(cropBox.getWidth() * scale), 1);
+        int height = (int) Math.max(Math.floor(cropBox.getHeight() * scale), 1);
+        int rotation = page.getRotation();
+        if (rotation == 90 || rotation == 270) {
+            return new Rectangle(0, 0, height, width);
+        }
+        return new Rectangle(0, 0, width, height);
+    }
+
+    private static boolean[] findContentTiles(Raster raster, int columns, int rows) {
+        boolean[] content = new boolean[columns * rows];
+        int[] row = new int[raster.getWidth()];
+        for (int y = 0; y < raster.getHeight(); y++) {
+            raster.getSamples(raster.getMinX(), raster.getMinY() + y, raster.getWidth(), 1, 0, row);
+            int tileRow = (y / TILE_SIZE) * columns;
+            for (int x = 0; x < row.length; x++) {
+                if (row[x] != 255) {
+                    content[tileRow + x / TILE_SIZE] = true;
+                }
+            }
+        }
+        return content;
+    }
+
+    /**
+     * The bounds, in tiles, of each group of set tiles touching each other, corners included.
+     */
+    private static List<Rectangle> connectedTiles(boolean[] tiles, int columns, int rows) {
+        List<Rectangle> groups = new ArrayList<>();
+        boolean[] visited = new boolean[tiles.length];
+        int[] stack = new int[tiles.length];
+        for (int start = 0; start < tiles.length; start++) {
+            if (!tiles[start] || visited[start]) {
+                continue;
+            }
+            Rectangle bounds = new Rectangle(start % columns, start / columns, 1, 1);
+            int size = 0;
+            stack[size++] = start;
+            visited[start] = true;
+            while (size > 0) {
+                int tile = stack[--size];
+                int row = tile / columns;
+                int column = tile % columns;
+                bounds.add(new Rectangle(column, row, 1, 1));
+                for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                    for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                        int neighbour = r * columns + c;
+                        if (tiles[neighbour] && !visited[neighbour]) {
+                            visited[neighbour] = true;
+                            stack[size++] = neighbour;
+                        }
+                    }
+                }
+            }
+            groups.add(bounds);
+        }
+        return groups;
+    }
+
+    /**
+     * Merges the rectangles that overlap until none do, so no part of the page is rendered twice.
+     */
+    private static List<Rectangle> mergeOverlapping(List<Rectangle> rectangles) {
+        List<Rectangle> merged = new ArrayList<>(rectangles);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < merged.size() && !changed; i++) {
+                for (int j = i + 1; j < merged.size(); j++) {
+                    if (merged.get(i).intersects(merged.get(j))) {
+                        merged.set(i, merged.get(i).union(merged.remove(j)));
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    protected PageDrawer createPageDrawer(PageDrawerParameters parameters) throws IOException {
+        if (textSuppressed) {
+            return new TextSuppressingPageDrawer(parameters, imageRendering);
+        }
+        if (thinShapesTraced) {
+            return new ThinShapeTracingPageDrawer(parameters, imageRendering);
+        }
+        return imageRendering == ImageRendering.DECODED
+                ? super.createPageDrawer(parameters)
+                : new ImageReplacingPageDrawer(parameters, imageRendering);
+    }
+
+    /**
+     * Draws images as {@link ImageRendering} asks, so images left out or drawn as their bounding box
+     * are never decoded.
+     */
+    private static class ImageReplacingPageDrawer extends PageDrawer {
+
+        private final ImageRendering imageRendering;
+
+        ImageReplacingPageDrawer(PageDrawerParameters parameters, ImageRendering imageRendering) throws IOException {
+            super(parameters);
+            this.imageRendering = imageRendering;
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) throws IOException {
+            switch (imageRendering) {
+                case BOUNDING_BOX:
+                    setClip();
+                    Graphics2D graphics = getGraphics();
+                    Paint paint = graphics.getPaint();
+                    graphics.setPaint(IMAGE_BOUNDING_BOX_COLOR);
+                    graphics.fill(imageBounds());
+                    graphics.setPaint(paint);
+                    break;
+                case SKIPPED:
+                    break;
+                default:
+                    super.drawImage(pdImage);
+            }
+        }
+
+        /**
+         * @return where the current image is drawn, the unit square in image space
+         */
+        final Shape imageBounds() {
+            AffineTransform imageTransform = getGraphicsState().getCurrentTransformationMatrix().createAffineTransform();
+            return imageTransform.createTransformedShape(new Rectangle(0, 0, 1, 1));
+        }
+    }
+
+    private static final class TextSuppressingPageDrawer extends ImageReplacingPageDrawer {
+
+        TextSuppressingPageDrawer(PageDrawerParameters parameters, ImageRendering imageRendering) throws IOException {
+            super(parameters, imageRendering);
+        }
+
+        // Tj, ' and "
+        @Override
+        public void showTextString(byte[] string) {}
+
+        // TJ
+        @Override
+        public void showTextStrings(COSArray array) {}
+    }
+
+    /**
+     * Also draws lines, and shapes too thin to cover a pixel, as a black line at least a pixel wide, as lines
+     * too thin to change the intensity of a pixel at a low resolution still make edges at a higher one.
+     */
+    private static final class ThinShapeTracingPageDrawer extends ImageReplacingPageDrawer {
+
+        ThinShapeTracingPageDrawer(PageDrawerParameters parameters, ImageRendering imageRendering) throws IOException {
+            super(parameters, imageRendering);
+        }
+
+        @Override
+        public void strokePath() throws IOException {
+            GeneralPath path = (GeneralPath) getLinePath().clone();
+            super.strokePath();
+            trace(path);
+        }
+
+        @Override
+        public void fillPath(int windingRule) throws IOException {
+            GeneralPath path = (GeneralPath) getLinePath().clone();
+            super.fillPath(windingRule);
+            traceIfThin(path);
+        }
+
+        @Override
+        public void fillAndStrokePath(int windingRule) throws IOException {
+            GeneralPath path = (GeneralPath) getLinePath().clone();
+            super.fillAndStrokePath(windingRule);
+            trace(path);
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) throws IOException {
+            super.drawImage(pdImage);
+            traceIfThin(imageBounds());
+        }
+
+        private void traceIfThin(Shape shape) {
+            Rectangle2D bounds = getGraphics().getTransform().createTransformedShape(shape).getBounds2D();
+            if (Math.min(bounds.getWidth(), bounds.getHeight()) < THIN_SHAPE_MAXIMUM) {
+                trace(shape);
+            }
+        }
+
+        private void trace(Shape shape) {
+            Graphics2D graphics = getGraphics();
+            AffineTransform transform = graphics.getTransform();
+            Shape traced = transform.createTransformedShape(shape);
+            Shape clip = graphics.getClip();
+            Stroke stroke = graphics.getStroke();
+            Paint paint = graphics.getPaint();
+            Object antialiasing = graphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+            // in pixels, and wide enough to cover one whatever the line's position; the clip is left out
+            // as a clip narrower than a pixel can leave nothing of the line either
+            graphics.setTransform(new AffineTransform());
+            graphics.setClip(null);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            graphics.setStroke(new BasicStroke(TRACE_WIDTH));
+            graphics.setPaint(Color.BLACK);
+            graphics.draw(traced);
+            graphics.setTransform(transform);
+            graphics.setClip(clip);
+            graphics.setStroke(stroke);
+            graphics.setPaint(paint);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+        }
+    }
+
+}
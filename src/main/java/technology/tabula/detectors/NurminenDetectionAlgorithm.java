@@ -3,19 +3,16 @@ package technology.tabula.detectors;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
-import org.apache.pdfbox.contentstream.operator.Operator;
-import org.apache.pdfbox.cos.COSName;
-import org.apache.pdfbox.pdfparser.PDFStreamParser;
-import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.common.PDStream;
-import org.apache.pdfbox.rendering.ImageType;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
 
 import technology.tabula.Line;
 import technology.tabula.Page;
@@ -32,6 +29,11 @@ import technology.tabula.extractors.SpreadsheetExtractionAlgorithm;
  * Attempt at an implementation of the table finding algorithm described by
  * Anssi Nurminen's master's thesis:
  * http://dspace.cc.tut.fi/dpub/bitstream/handle/123456789/21520/Nurminen.pdf?sequence=3
+ * <p>
+ * An instance keeps the renderer of the document it last detected tables on, so the next pages of that
+ * document reuse what it read. That keeps the document reachable until the instance detects tables on
+ * another document, or on any page once the document is closed. An instance can be shared between threads,
+ * but pages of the same document are rendered one at a time.
  */
 public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
 
@@ -44,6 +46,48 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
     private static final int REQUIRED_TEXT_LINES_FOR_EDGE = 4;
     private static final int REQUIRED_CELLS_FOR_TABLE = 4;
     private static final float IDENTICAL_TABLE_OVERLAP_RATIO = 0.9f;
+    private static final float IMAGE_DPI = 144;
+
+    private final ImageRendering imageRendering;
+    private final Executor executor;
+    private DetectionRenderer renderer;
+
+    /**
+     * How the images on a page are rendered to look for edges.
+     */
+    public enum ImageRendering {
+        /** decoded and drawn as they are */
+        DECODED,
+        /** drawn as a gray box where the image would be, without decoding it: only the image's sides make edges */
+        BOUNDING_BOX,
+        /** left out, without decoding them */
+        SKIPPED
+    }
+
+    /**
+     * A detector that decodes images, and keeps the renderer of the last document it was used on.
+     */
+    public NurminenDetectionAlgorithm() {
+        this(ImageRendering.DECODED);
+    }
+
+    /**
+     * A detector that keeps the renderer of the last document it was used on.
+     */
+    public NurminenDetectionAlgorithm(ImageRendering imageRendering) {
+        this(imageRendering, null);
+    }
+
+    /**
+     * A detector that keeps the renderer of the last document it was used on.
+     *
+     * @param executor where the edges are found in the page images, and the page text is grouped into lines,
+     *                 while the page is rendered on the calling thread; null to do it all on the calling thread
+     */
+    public NurminenDetectionAlgorithm(ImageRendering imageRendering, Executor executor) {
+        this.imageRendering = imageRendering;
+        this.executor = executor;
+    }
 
     /**
      * Helper class that encapsulates a text edge
@@ -88,6 +132,19 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
         }
     }
 
+    /**
+     * The renderer of the last document pages were detected on, reused for the document's next pages
+     * so the resources it caches are read once per document. A renderer of a closed document is let go.
+     */
+    private synchronized DetectionRenderer getRenderer(PDDocument document) {
+        DetectionRenderer current = renderer;
+        if (current == null || !current.renders(document) || current.rendersClosedDocument()) {
+            current = new DetectionRenderer(document, imageRendering);
+            renderer = current;
+        }
+        return current;
+    }
+
     @Override
     public List<Rectangle> detect(Page page) {
 
@@ -95,37 +152,83 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
         // we get these from an image of the PDF and not the PDF itself because sometimes there are invisible PDF
         // instructions that are interpreted incorrectly as visible elements - we really want to capture what a
         // person sees when they look at the PDF
-        BufferedImage image;
-        PDPage pdfPage = page.getPDPage();
-        try {
-            image = Utils.pageConvertToImage(page.getPDDoc(), pdfPage, 144, ImageType.GRAY);
-        } catch (IOException e) {
-            return new ArrayList<>();
+        DetectionRenderer renderer = getRenderer(page.getPDDoc());
+        int pageIndex = page.getPageNumber() - 1;
+        // the page is rendered on this thread, as the document can't be read from two at once, but the
+        // text lines and the edges of every image rendered so far are found meanwhile
+        CompletableFuture<List<Line>> lines = submit(() -> getTextLines(page));
+        List<CompletableFuture<List<Ruling>>> horizontalScans = new ArrayList<>();
+        List<CompletableFuture<List<Ruling>>> verticalScans = new ArrayList<>();
+        // a renderer draws one page at a time, for whichever thread shares it
+        synchronized (renderer) {
+            try {
+                // only the parts of the page with something drawn on them are rendered at full resolution
+                List<java.awt.Rectangle> regions = renderer.findContentRegions(pageIndex, IMAGE_DPI);
+                for (java.awt.Rectangle region : regions) {
+                    BufferedImage image = renderer.renderGrayRegion(pageIndex, IMAGE_DPI, region, true);
+                    horizontalScans.add(submit(() -> new RasterEdgeScanner(image, region.x, region.y)
+                            .getHorizontalEdges(GRAYSCALE_INTENSITY_THRESHOLD, HORIZONTAL_EDGE_WIDTH_MINIMUM)));
+                }
+
+                // now check the page for vertical lines, but leave the text out to make things less confusing
+                for (java.awt.Rectangle region : regions) {
+                    BufferedImage image = renderer.renderGrayRegion(pageIndex, IMAGE_DPI, region, false);
+                    verticalScans.add(submit(() -> new RasterEdgeScanner(image, region.x, region.y)
+                            .getVerticalEdges(GRAYSCALE_INTENSITY_THRESHOLD, VERTICAL_EDGE_HEIGHT_MINIMUM)));
+                }
+            } catch (IOException e) {
+                return new ArrayList<>();
+            }
         }
 
-        List<Ruling> horizontalRulings = this.getHorizontalRulings(image);
+        List<Ruling> horizontalRulings = new ArrayList<>();
+        for (CompletableFuture<List<Ruling>> scan : horizontalScans) {
+            horizontalRulings.addAll(join(scan));
+        }
+        List<Ruling> verticalRulings = new ArrayList<>();
+        for (CompletableFuture<List<Ruling>> scan : verticalScans) {
+            verticalRulings.addAll(join(scan));
+        }
+        Collections.sort(horizontalRulings, RasterEdgeScanner.BY_LEFT_THEN_TOP);
+        Collections.sort(verticalRulings, RasterEdgeScanner.BY_TOP_THEN_LEFT);
+
+        return detect(horizontalRulings, verticalRulings, join(lines));
+    }
+
+    /**
+     * Runs {@code task} on the executor, if there is one.
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (executor == null) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+        return CompletableFuture.supplyAsync(task, executor);
+    }
 
-        // now check the page for vertical lines, but remove the text first to make things less confusing
-        PDDocument removeTextDocument = null;
+    private static <T> T join(CompletableFuture<T> result) {
         try {
-            removeTextDocument = this.removeText(pdfPage);
-            pdfPage = removeTextDocument.getPage(0);
-            image = Utils.pageConvertToImage(removeTextDocument, pdfPage, 144, ImageType.GRAY);
-        } catch (Exception e) {
-            return new ArrayList<>();
-        } finally {
-            if (removeTextDocument != null) {
-                try {
-                    removeTextDocument.close();
-                } catch (IOException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                }
+            return result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
             }
+            throw e;
         }
+    }
 
-        List<Ruling> verticalRulings = this.getVerticalRulings(image);
+    private static List<Line> getTextLines(Page page) {
+        List<TextChunk> textChunks = TextElement.mergeWords(page.getText());
+        return TextChunk.groupByLines(textChunks);
+    }
 
+    /**
+     * @param lines the text lines of the page, changed in place
+     */
+    private List<Rectangle> detect(List<Ruling> horizontalRulings, List<Ruling> verticalRulings, List<Line> lines) {
         List<Ruling> allEdges = new ArrayList<>(horizontalRulings);
         allEdges.addAll(verticalRulings);
 
@@ -194,9 +297,6 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
         }
 
         // now look at text rows to help us find more tables and flesh out existing ones
-        List<TextChunk> textChunks = TextElement.mergeWords(page.getText());
-        List<Line> lines = TextChunk.groupByLines(textChunks);
-
         // first look for text rows that intersect an existing table - those lines should probably be part of the table
         for (Line textRow : lines) {
             for (Rectangle tableArea : tableAreas) {
@@ -327,6 +427,12 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
         int tableSpaceCount = 0;
         float totalRowSpacing = 0;
 
+        // the edges near a text row are looked up rather than all checked against it
+        STRtree edgeIndex = new STRtree();
+        for (TextEdge edge : relevantEdges) {
+            edgeIndex.insert(new Envelope(edge.x1, edge.x2, edge.y1, edge.y2), edge);
+        }
+
         // go through the lines and find the ones that have the correct count of the relevant edges
         for (Line textRow : lines) {
             int numRelevantEdges = 0;
@@ -350,8 +456,11 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
                 relativeEdgeDifferenceThreshold = 0;
             }
 
-            for (TextEdge edge : relevantEdges) {
-                if (textRow.intersectsLine(edge)) {
+            // one unit around the row, as the row's bounds are rounded to floats
+            Envelope rowEnvelope = new Envelope(textRow.getLeft(), textRow.getRight(), textRow.getTop(), textRow.getBottom());
+            rowEnvelope.expandBy(1);
+            for (Object candidate : edgeIndex.query(rowEnvelope)) {
+                if (textRow.intersectsLine((TextEdge) candidate)) {
                     numRelevantEdges++;
                 }
             }
@@ -514,9 +623,10 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
         List<TextEdge> midTextEdges = new ArrayList<>();
         List<TextEdge> rightTextEdges = new ArrayList<>();
 
-        Map<Integer, List<TextChunk>> currLeftEdges = new HashMap<>();
-        Map<Integer, List<TextChunk>> currMidEdges = new HashMap<>();
-        Map<Integer, List<TextChunk>> currRightEdges = new HashMap<>();
+        // the edges still open, by their position, so those a chunk of text ends are found without going through all
+        NavigableMap<Integer, List<TextChunk>> currLeftEdges = new TreeMap<>();
+        NavigableMap<Integer, List<TextChunk>> currMidEdges = new TreeMap<>();
+        NavigableMap<Integer, List<TextChunk>> currRightEdges = new TreeMap<>();
 
 
         int numOfLines = lines.size();
@@ -590,24 +700,30 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
     }
 
 
-    private Collection<TextEdge> calculateExtendedEdges(Integer numOfLines, Map<Integer, List<TextChunk>> currDirectedEdges, Integer left, Integer right) {
+    private Collection<TextEdge> calculateExtendedEdges(Integer numOfLines, NavigableMap<Integer, List<TextChunk>> currDirectedEdges, Integer left, Integer right) {
         return calculateExtendedEdges(numOfLines, currDirectedEdges, left, right, null, null);
     }
 
-    private Collection<TextEdge> calculateExtendedEdges(Integer numOfLines, Map<Integer, List<TextChunk>> currDirectedEdges, Integer left, Integer right, Integer mid, Integer minDistToMid) {
+    private Collection<TextEdge> calculateExtendedEdges(Integer numOfLines, NavigableMap<Integer, List<TextChunk>> currDirectedEdges, Integer left, Integer right, Integer mid, Integer minDistToMid) {
         Set<TextEdge> extendedEdges = new HashSet<>();
-        Iterator<Map.Entry<Integer, List<TextChunk>>> edgeIterator = currDirectedEdges.entrySet().iterator();
+        if (right - left < 2) {
+            // no edge strictly between them
+            return extendedEdges;
+        }
+        Iterator<Map.Entry<Integer, List<TextChunk>>> edgeIterator =
+                currDirectedEdges.subMap(left, false, right, false).entrySet().iterator();
         while (edgeIterator.hasNext()) {
             Map.Entry<Integer, List<TextChunk>> entry = edgeIterator.next();
             Integer key = entry.getKey();
+            // read before the entry is removed, as the tree can reuse a removed entry for the next one
+            List<TextChunk> edgeChunks = entry.getValue();
 
             // if mid and minDistToMid are set, we calculate if the distance to mid is actually above,
             // otherwise we ignore it
             boolean hasMinDistToMid = mid == null || minDistToMid == null || Math.abs(key - mid) > minDistToMid;
 
-            if (key > left && key < right && hasMinDistToMid) {
+            if (hasMinDistToMid) {
                 edgeIterator.remove();
-                List<TextChunk> edgeChunks = entry.getValue();
                 if (edgeChunks.size() >= REQUIRED_TEXT_LINES_FOR_EDGE) {
                     TextEdge edge = getEdgeFromChunks(numOfLines, key, edgeChunks);
                     extendedEdges.add(edge);
@@ -618,32 +734,46 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
     }
 
     private List<Rectangle> getTableAreasFromCells(List<? extends Rectangle> cells) {
+        // a cell joins the first group with a cell that has a corner close to one of its own. The corners of the
+        // grouped cells are kept in a grid of squares as wide as that distance, so the close corners are in the
+        // squares around the cell's own.
         List<List<Rectangle>> cellGroups = new ArrayList<>();
+        Map<Long, List<Integer>> cornersBySquare = new HashMap<>();
+        List<Point2D> corners = new ArrayList<>();
+        List<Integer> cornerGroups = new ArrayList<>();
         for (Rectangle cell : cells) {
-            boolean addedToGroup = false;
-
-            cellCheck:
-            for (List<Rectangle> cellGroup : cellGroups) {
-                for (Rectangle groupCell : cellGroup) {
-                    Point2D[] groupCellCorners = groupCell.getPoints();
-                    Point2D[] candidateCorners = cell.getPoints();
-
-                    for (Point2D candidateCorner : candidateCorners) {
-                        for (Point2D groupCellCorner : groupCellCorners) {
-                            if (candidateCorner.distance(groupCellCorner) < CELL_CORNER_DISTANCE_MAXIMUM) {
-                                cellGroup.add(cell);
-                                addedToGroup = true;
-                                break cellCheck;
+            Point2D[] candidateCorners = cell.getPoints();
+
+            int group = Integer.MAX_VALUE;
+            for (Point2D candidateCorner : candidateCorners) {
+                int column = gridCoordinate(candidateCorner.getX());
+                int row = gridCoordinate(candidateCorner.getY());
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        List<Integer> squareCorners = cornersBySquare.get(gridSquare(column + dx, row + dy));
+                        if (squareCorners == null) {
+                            continue;
+                        }
+                        for (int corner : squareCorners) {
+                            if (cornerGroups.get(corner) < group
+                                    && candidateCorner.distance(corners.get(corner)) < CELL_CORNER_DISTANCE_MAXIMUM) {
+                                group = cornerGroups.get(corner);
                             }
                         }
                     }
                 }
             }
 
-            if (!addedToGroup) {
-                ArrayList<Rectangle> cellGroup = new ArrayList<>();
-                cellGroup.add(cell);
-                cellGroups.add(cellGroup);
+            if (group == Integer.MAX_VALUE) {
+                group = cellGroups.size();
+                cellGroups.add(new ArrayList<Rectangle>());
+            }
+            cellGroups.get(group).add(cell);
+            for (Point2D candidateCorner : candidateCorners) {
+                long square = gridSquare(gridCoordinate(candidateCorner.getX()), gridCoordinate(candidateCorner.getY()));
+                cornersBySquare.computeIfAbsent(square, k -> new ArrayList<>()).add(corners.size());
+                corners.add(candidateCorner);
+                cornerGroups.add(group);
             }
         }
 
@@ -673,162 +803,14 @@ public class NurminenDetectionAlgorithm implements DetectionAlgorithm {
         return tableAreas;
     }
 
-    private List<Ruling> getHorizontalRulings(BufferedImage image) {
-
-        // get all horizontal edges, which we'll define as a change in grayscale colour
-        // along a straight line of a certain length
-        ArrayList<Ruling> horizontalRulings = new ArrayList<>();
-
-        Raster r = image.getRaster();
-        int width = r.getWidth();
-        int height = r.getHeight();
-
-        for (int x = 0; x < width; x++) {
-
-            int[] lastPixel = r.getPixel(x, 0, (int[]) null);
-
-            for (int y = 1; y < height - 1; y++) {
-
-                int[] currPixel = r.getPixel(x, y, (int[]) null);
-
-                int diff = Math.abs(currPixel[0] - lastPixel[0]);
-                if (diff > GRAYSCALE_INTENSITY_THRESHOLD) {
-                    // we hit what could be a line
-                    // don't bother scanning it if we've hit a pixel in the line before
-                    boolean alreadyChecked = false;
-                    for (Line2D.Float line : horizontalRulings) {
-                        if (y == line.getY1() && x >= line.getX1() && x <= line.getX2()) {
-                            alreadyChecked = true;
-                            break;
-                        }
-                    }
-
-                    if (alreadyChecked) {
-                        lastPixel = currPixel;
-                        continue;
-                    }
-
-                    int lineX = x + 1;
-
-                    while (lineX < width) {
-                        int[] linePixel = r.getPixel(lineX, y, (int[]) null);
-                        int[] abovePixel = r.getPixel(lineX, y - 1, (int[]) null);
-
-                        if (Math.abs(linePixel[0] - abovePixel[0]) <= GRAYSCALE_INTENSITY_THRESHOLD
-                                || Math.abs(currPixel[0] - linePixel[0]) > GRAYSCALE_INTENSITY_THRESHOLD) {
-                            break;
-                        }
-
-                        lineX++;
-                    }
-
-                    int endX = lineX - 1;
-                    int lineWidth = endX - x;
-                    if (lineWidth > HORIZONTAL_EDGE_WIDTH_MINIMUM) {
-                        horizontalRulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(endX, y)));
-                    }
-                }
-
-                lastPixel = currPixel;
-            }
-        }
-
-        return horizontalRulings;
-    }
-
-    private List<Ruling> getVerticalRulings(BufferedImage image) {
-
-        // get all vertical edges, which we'll define as a change in grayscale colour
-        // along a straight line of a certain length
-        ArrayList<Ruling> verticalRulings = new ArrayList<>();
-
-        Raster r = image.getRaster();
-        int width = r.getWidth();
-        int height = r.getHeight();
-
-        for (int y = 0; y < height; y++) {
-
-            int[] lastPixel = r.getPixel(0, y, (int[]) null);
-
-            for (int x = 1; x < width - 1; x++) {
-
-                int[] currPixel = r.getPixel(x, y, (int[]) null);
-
-                int diff = Math.abs(currPixel[0] - lastPixel[0]);
-                if (diff > GRAYSCALE_INTENSITY_THRESHOLD) {
-                    // we hit what could be a line
-                    // don't bother scanning it if we've hit a pixel in the line before
-                    boolean alreadyChecked = false;
-                    for (Line2D.Float line : verticalRulings) {
-                        if (x == line.getX1() && y >= line.getY1() && y <= line.getY2()) {
-                            alreadyChecked = true;
-                            break;
-                        }
-                    }
-
-                    if (alreadyChecked) {
-                        lastPixel = currPixel;
-                        continue;
-                    }
-
-                    int lineY = y + 1;
-
-                    while (lineY < height) {
-                        int[] linePixel = r.getPixel(x, lineY, (int[]) null);
-                        int[] leftPixel = r.getPixel(x - 1, lineY, (int[]) null);
-
-                        if (Math.abs(linePixel[0] - leftPixel[0]) <= GRAYSCALE_INTENSITY_THRESHOLD
-                                || Math.abs(currPixel[0] - linePixel[0]) > GRAYSCALE_INTENSITY_THRESHOLD) {
-                            break;
-                        }
-
-                        lineY++;
-                    }
-
-                    int endY = lineY - 1;
-                    int lineLength = endY - y;
-                    if (lineLength > VERTICAL_EDGE_HEIGHT_MINIMUM) {
-                        verticalRulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(x, endY)));
-                    }
-                }
-
-                lastPixel = currPixel;
-            }
-        }
-
-        return verticalRulings;
+    /**
+     * The column, or row, of the corner grid a coordinate is in.
+     */
+    private static int gridCoordinate(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_CORNER_DISTANCE_MAXIMUM);
     }
 
-
-    // taken from http://www.docjar.com/html/api/org/apache/pdfbox/examples/util/RemoveAllText.java.html
-    private PDDocument removeText(PDPage page) throws IOException {
-
-        PDFStreamParser parser = new PDFStreamParser(page);
-        parser.parse();
-        List<Object> tokens = parser.getTokens();
-        List<Object> newTokens = new ArrayList<>();
-        for (Object token : tokens) {
-            if (token instanceof Operator) {
-                Operator op = (Operator) token;
-                if (op.getName().equals("TJ") || op.getName().equals("Tj")) {
-                    //remove the one argument to this operator
-                    newTokens.remove(newTokens.size() - 1);
-                    continue;
-                }
-            }
-            newTokens.add(token);
-        }
-
-        PDDocument document = new PDDocument();
-        PDPage newPage = document.importPage(page);
-        newPage.setResources(page.getResources());
-
-        PDStream newContents = new PDStream(document);
-        OutputStream out = newContents.createOutputStream(COSName.FLATE_DECODE);
-        ContentStreamWriter writer = new ContentStreamWriter(out);
-        writer.writeTokens(newTokens);
-        out.close();
-        newPage.setContents(newContents);
-        return document;
+    private static long gridSquare(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
     }
 }
@@ -0,0 +1,226 @@
+package technology.tabula.detectors;
+
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import technology.tabula.Ruling;
+
+/**
+ * Finds the horizontal and vertical edges of a grayscale page image, as {@link NurminenDetectionAlgorithm}
+ * defines them: a change in intensity, across the edge, that runs along a straight line of a certain length.
+ * <p>
+ * The intensities are read straight from the image's byte buffer. Where they change across a row or a
+ * column is packed into bitsets first, so runs of edge pixels are skipped 64 pixels at a time, and the
+ * pixels already covered by an edge are known from the position of the last edge in the same row
+ * (or column) instead of a search through all of them.
+ */
+public final class RasterEdgeScanner {
+
+    // the order of the horizontal edges
+    static final Comparator<Ruling> BY_LEFT_THEN_TOP = new Comparator<Ruling>() {
+        @Override
+        public int compare(Ruling a, Ruling b) {
+            int result = Float.compare(a.x1, b.x1);
+            return result != 0 ? result : Float.compare(a.y1, b.y1);
+        }
+    };
+
+    // the order of the vertical edges
+    static final Comparator<Ruling> BY_TOP_THEN_LEFT = new Comparator<Ruling>() {
+        @Override
+        public int compare(Ruling a, Ruling b) {
+            int result = Float.compare(a.y1, b.y1);
+            return result != 0 ? result : Float.compare(a.x1, b.x1);
+        }
+    };
+
+    private final int width;
+    private final int height;
+    private final byte[] pixels;
+    private final int offset;
+    private final int scanlineStride;
+    private final int originX;
+    private final int originY;
+
+    public RasterEdgeScanner(BufferedImage image) {
+        this(image, 0, 0);
+    }
+
+    /**
+     * @param originX where the image's left side is, in the coordinates the edges are given in
+     * @param originY where the image's top side is, in the coordinates the edges are given in
+     */
+    public RasterEdgeScanner(BufferedImage image, int originX, int originY) {
+        this.originX = originX;
+        this.originY = originY;
+        Raster raster = image.getRaster();
+        this.width = raster.getWidth();
+        this.height = raster.getHeight();
+
+        SampleModel sampleModel = raster.getSampleModel();
+        if (raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getDataBuffer().getNumBanks() == 1
+                && sampleModel instanceof ComponentSampleModel
+                && ((ComponentSampleModel) sampleModel).getPixelStride() == 1
+                && sampleModel.getNumBands() == 1) {
+            ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+            this.pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+            this.offset = raster.getDataBuffer().getOffset()
+                    + componentSampleModel.getOffset(raster.getMinX() - raster.getSampleModelTranslateX(),
+                            raster.getMinY() - raster.getSampleModelTranslateY());
+            this.scanlineStride = componentSampleModel.getScanlineStride();
+        } else {
+            // not a gray image: the first band, as Raster.getPixel() would give it
+            int[] samples = raster.getSamples(raster.getMinX(), raster.getMinY(), width, height, 0, (int[]) null);
+            this.pixels = new byte[samples.length];
+            for (int i = 0; i < samples.length; i++) {
+                this.pixels[i] = (byte) samples[i];
+            }
+            this.offset = 0;
+            this.scanlineStride = width;
+        }
+    }
+
+    private int pixel(int x, int y) {
+        return pixels[offset + y * scanlineStride + x] & 0xFF;
+    }
+
+    /**
+     * The edges along which the intensity changes from one row to the next by more than {@code threshold},
+     * longer than {@code minimumWidth}, ordered by their left and then their top end.
+     */
+    public List<Ruling> getHorizontalEdges(int threshold, int minimumWidth) {
+        List<Ruling> edges = new ArrayList<>();
+        long[] changes = new long[words(width)];
+
+        for (int y = 1; y < height - 1; y++) {
+            // pixels differing from the one above
+            clearWords(changes);
+            for (int x = 0; x < width; x++) {
+                if (Math.abs(pixel(x, y) - pixel(x, y - 1)) > threshold) {
+                    changes[x >>> 6] |= 1L << x;
+                }
+            }
+
+            int lastEdgeEnd = -1;
+            for (int x = nextSetBit(changes, 0, width); x < width; x = nextSetBit(changes, x + 1, width)) {
+                if (x <= lastEdgeEnd) {
+                    continue;
+                }
+                int pixel = pixel(x, y);
+                int runEnd = nextClearBit(changes, x + 1, width);
+                int lineX = x + 1;
+                while (lineX < runEnd && Math.abs(pixel - pixel(lineX, y)) <= threshold) {
+                    lineX++;
+                }
+
+                int endX = lineX - 1;
+                if (endX - x > minimumWidth) {
+                    edges.add(new Ruling(new Point2D.Float(originX + x, originY + y),
+                            new Point2D.Float(originX + endX, originY + y)));
+                    lastEdgeEnd = endX;
+                }
+            }
+        }
+
+        Collections.sort(edges, BY_LEFT_THEN_TOP);
+        return edges;
+    }
+
+    /**
+     * The edges along which the intensity changes from one column to the next by more than {@code threshold},
+     * longer than {@code minimumHeight}, ordered by their top and then their left end.
+     */
+    public List<Ruling> getVerticalEdges(int threshold, int minimumHeight) {
+        List<Ruling> edges = new ArrayList<>();
+        long[] changes = new long[words(height)];
+
+        for (int x = 1; x < width - 1; x++) {
+            // pixels differing from the one on their left
+            clearWords(changes);
+            for (int y = 0; y < height; y++) {
+                if (Math.abs(pixel(x, y) - pixel(x - 1, y)) > threshold) {
+                    changes[y >>> 6] |= 1L << y;
+                }
+            }
+
+            int lastEdgeEnd = -1;
+            for (int y = nextSetBit(changes, 0, height); y < height; y = nextSetBit(changes, y + 1, height)) {
+                if (y <= lastEdgeEnd) {
+                    continue;
+                }
+                int pixel = pixel(x, y);
+                int runEnd = nextClearBit(changes, y + 1, height);
+                int lineY = y + 1;
+                while (lineY < runEnd && Math.abs(pixel - pixel(x, lineY)) <= threshold) {
+                    lineY++;
+                }
+
+                int endY = lineY - 1;
+                if (endY - y > minimumHeight) {
+                    edges.add(new Ruling(new Point2D.Float(originX + x, originY + y),
+                            new Point2D.Float(originX + x, originY + endY)));
+                    lastEdgeEnd = endY;
+                }
+            }
+        }
+
+        Collections.sort(edges, BY_TOP_THEN_LEFT);
+        return edges;
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static void clearWords(long[] words) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = 0;
+        }
+    }
+
+    /**
+     * The first set bit at or after {@code from}, or {@code size} if there is none.
+     */
+    private static int nextSetBit(long[] words, int from, int size) {
+        if (from >= size) {
+            return size;
+        }
+        int wordIndex = from >>> 6;
+        long word = words[wordIndex] & (-1L << from);
+        while (word == 0) {
+            if (++wordIndex == words.length) {
+                return size;
+            }
+            word = words[wordIndex];
+        }
+        return Math.min(size, (wordIndex << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * The first clear bit at or after {@code from}, or {@code size} if there is none.
+     */
+    private static int nextClearBit(long[] words, int from, int size) {
+        if (from >= size) {
+            return size;
+        }
+        int wordIndex = from >>> 6;
+        long word = ~words[wordIndex] & (-1L << from);
+        while (word == 0) {
+            if (++wordIndex == words.length) {
+                return size;
+            }
+            word = ~words[wordIndex];
+        }
+        return Math.min(size, (wordIndex << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+}
@@ -63,36 +63,38 @@ public class BasicExtractionAlgorithm implements ExtractionAlgorithm {
             columns = columnPositions(lines);
         }
         
+        float[] columnBoundaries = new float[columns.size()];
+        for (int j = 0; j < columnBoundaries.length; j++) {
+            columnBoundaries[j] = columns.get(j);
+        }
+
         Table table = new Table(this);
         table.setRect(page.getLeft(), page.getTop(), page.getWidth(), page.getHeight());
 
+        // the cells of a row, the last one for the text right of every column boundary
+        TextChunk[] rowCells = new TextChunk[columnBoundaries.length + 1];
         for (int i = 0; i < lines.size(); i++) {
             Line line = lines.get(i);
             List<TextChunk> elements = line.getTextElements();
-            
-            Collections.sort(elements, new Comparator<TextChunk>() {
-
-				@Override
-				public int compare(TextChunk o1, TextChunk o2) {
-					return Float.compare(o1.getLeft(), o2.getLeft());
-				}
-			});
-            
+
+            // the chunks of a line are nearly always in order already
+            if (!isSortedByLeft(elements)) {
+                Collections.sort(elements, BY_LEFT);
+            }
+
+            Arrays.fill(rowCells, null);
             for (TextChunk tc: elements) {
                 if (tc.isSameChar(Line.WHITE_SPACE_CHARS)) {
                     continue;
                 }
 
-                int j = 0;
-                boolean found = false;
-                for(; j < columns.size(); j++) {
-                    if (tc.getLeft() <= columns.get(j)) {
-                        found = true; 
-                        break;
-                    } 
+                int j = columnOf(columnBoundaries, tc.getLeft());
+                if (rowCells[j] != null) {
+                    tc.merge(rowCells[j]);
                 }
-                table.add(tc, i, found ? j : columns.size());
+                rowCells[j] = tc;
             }
+            table.addRow(i, rowCells);
         }
         
         return Arrays.asList(new Table[] { table } );
@@ -102,64 +104,138 @@ public class BasicExtractionAlgorithm implements ExtractionAlgorithm {
     public String toString() {
         return "stream";
     }
+
+    private static final Comparator<TextChunk> BY_LEFT = new Comparator<TextChunk>() {
+        @Override
+        public int compare(TextChunk o1, TextChunk o2) {
+            return Float.compare(o1.getLeft(), o2.getLeft());
+        }
+    };
+
+    private static boolean isSortedByLeft(List<TextChunk> chunks) {
+        for (int i = 1; i < chunks.size(); i++) {
+            if (BY_LEFT.compare(chunks.get(i - 1), chunks.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param columnBoundaries the right sides of the columns, in ascending order
+     * @return the first column whose right side is not left of {@code left}, or the one after the last
+     */
+    private static int columnOf(float[] columnBoundaries, float left) {
+        int low = 0, high = columnBoundaries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (left <= columnBoundaries[mid]) {
+                high = mid;
+            }
+            else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
     
     
     /**
+     * A column region takes the chunks of text of each line that overlap it horizontally, and a chunk that overlaps
+     * none of them starts a new one. Where regions overlap each other, the chunk goes to the one started first.
+     * <p>
+     * The regions are kept sorted by their left side, with the rightmost right side among them up to each one,
+     * so the regions a chunk can overlap are found by a binary search and a short walk back rather than by
+     * checking every region against every chunk.
+     *
      * @param lines must be an array of lines sorted by their +top+ attribute
      * @return a list of column boundaries (x axis)
      */
     public static List<java.lang.Float> columnPositions(List<Line> lines) {
 
-        List<Rectangle> regions = new ArrayList<>();
-        for (TextChunk tc: lines.get(0).getTextElements()) {
-            if (tc.isSameChar(Line.WHITE_SPACE_CHARS)) { 
-                continue; 
+        // in the order they were started
+        final List<Rectangle> regions = new ArrayList<>();
+        // the indices of the regions, by their left side
+        List<Integer> regionsByLeft = new ArrayList<>();
+        Comparator<Integer> byLeft = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Float.compare(regions.get(i1).getLeft(), regions.get(i2).getLeft());
             }
-            Rectangle r = new Rectangle();
-            r.setRect(tc);
-            regions.add(r);
-        }
-        
-        for (Line l: lines.subList(1, lines.size())) {
+        };
+
+        for (Line l: lines) {
             List<TextChunk> lineTextElements = new ArrayList<>();
             for (TextChunk tc: l.getTextElements()) {
-                if (!tc.isSameChar(Line.WHITE_SPACE_CHARS)) { 
+                if (!tc.isSameChar(Line.WHITE_SPACE_CHARS)) {
                     lineTextElements.add(tc);
                 }
             }
-            
-            for (Rectangle cr: regions) {
 
-                List<TextChunk> overlaps = new ArrayList<>();
-                for (TextChunk te: lineTextElements) {
-                    if (cr.horizontallyOverlaps(te)) {
-                        overlaps.add(te);
+            // the regions only change once the whole line is assigned, so they stay sorted meanwhile
+            Collections.sort(regionsByLeft, byLeft);
+            float[] maxRightByLeft = new float[regionsByLeft.size()];
+            for (int i = 0; i < maxRightByLeft.length; i++) {
+                float right = regions.get(regionsByLeft.get(i)).getRight();
+                maxRightByLeft[i] = i == 0 ? right : Math.max(maxRightByLeft[i - 1], right);
+            }
+
+            int[] owners = new int[lineTextElements.size()];
+            for (int k = 0; k < owners.length; k++) {
+                TextChunk te = lineTextElements.get(k);
+                int owner = -1;
+                // walk back from the last region starting left of the chunk's right side, while one of them
+                // still reaches past its left side
+                for (int i = regionsStartingBefore(regions, regionsByLeft, te.getRight()) - 1;
+                     i >= 0 && maxRightByLeft[i] > te.getLeft(); i--) {
+                    int region = regionsByLeft.get(i);
+                    if ((owner == -1 || region < owner) && regions.get(region).horizontallyOverlaps(te)) {
+                        owner = region;
                     }
                 }
-                
-                for (TextChunk te: overlaps) {
-                    cr.merge(te);
-                }
-                
-                lineTextElements.removeAll(overlaps);
+                owners[k] = owner;
             }
-            
-            for (TextChunk te: lineTextElements) {
-                Rectangle r = new Rectangle();
-                r.setRect(te);
-                regions.add(r);
+
+            for (int k = 0; k < owners.length; k++) {
+                TextChunk te = lineTextElements.get(k);
+                if (owners[k] != -1) {
+                    regions.get(owners[k]).merge(te);
+                }
+                else {
+                    Rectangle r = new Rectangle();
+                    r.setRect(te);
+                    regionsByLeft.add(regions.size());
+                    regions.add(r);
+                }
             }
         }
-        
+
         List<java.lang.Float> rv = new ArrayList<>();
         for (Rectangle r: regions) {
             rv.add(r.getRight());
         }
-        
+
         Collections.sort(rv);
-        
+
         return rv;
-        
+
+    }
+
+    /**
+     * @return how many of the regions, sorted by their left side, start left of {@code x}
+     */
+    private static int regionsStartingBefore(List<Rectangle> regions, List<Integer> regionsByLeft, float x) {
+        int low = 0, high = regionsByLeft.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (regions.get(regionsByLeft.get(mid)).getLeft() < x) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
 }
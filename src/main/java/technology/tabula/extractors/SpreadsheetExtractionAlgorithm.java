@@ -38,6 +38,10 @@ public class SpreadsheetExtractionAlgorithm implements ExtractionAlgorithm {
     
     @Override
     public List<Table> extract(Page page) {
+        RulingSet rulings = page.getRulingSet();
+        if (rulings.isCollapsed()) {
+            return extract(page, rulings.getHorizontals(), rulings.getVerticals());
+        }
         return extract(page, page.getRulings());
     }
     
@@ -57,20 +61,24 @@ public class SpreadsheetExtractionAlgorithm implements ExtractionAlgorithm {
                 verticalR.add(r);
             }
         }
-        horizontalR = Ruling.collapseOrientedRulings(horizontalR);
-        verticalR = Ruling.collapseOrientedRulings(verticalR);
-        
+        return extract(page, Ruling.collapseOrientedRulings(horizontalR), Ruling.collapseOrientedRulings(verticalR));
+    }
+
+    private List<Table> extract(Page page, List<Ruling> horizontalR, List<Ruling> verticalR) {
         List<Cell> cells = findCells(horizontalR, verticalR);
         List<Rectangle> spreadsheetAreas = findSpreadsheetsFromCells(cells);
         
+        List<List<TextElement>> cellTexts = spreadsheetAreas.isEmpty() ? null : page.getText(cells);
+
         List<Table> spreadsheets = new ArrayList<>();
         for (Rectangle area: spreadsheetAreas) {
 
             List<Cell> overlappingCells = new ArrayList<>();
-            for (Cell c: cells) {
+            for (int i = 0; i < cells.size(); i++) {
+                Cell c = cells.get(i);
                 if (c.intersects(area)) {
 
-                    c.setTextElements(TextElement.mergeWords(page.getText(c)));
+                    c.setTextElements(TextElement.mergeWords(cellTexts.get(i)));
                     overlappingCells.add(c);
                 }
             }
@@ -131,42 +139,73 @@ public class SpreadsheetExtractionAlgorithm implements ExtractionAlgorithm {
     
     public static List<Cell> findCells(List<Ruling> horizontalRulingLines, List<Ruling> verticalRulingLines) {
         List<Cell> cellsFound = new ArrayList<>();
-        Map<Point2D, Ruling[]> intersectionPoints = Ruling.findIntersections(horizontalRulingLines, verticalRulingLines);
-        List<Point2D> intersectionPointsList = new ArrayList<>(intersectionPoints.keySet());
-        intersectionPointsList.sort(Y_FIRST_POINT_COMPARATOR);
-        
-        for (int i = 0; i < intersectionPointsList.size(); i++) {
-            Point2D topLeft = intersectionPointsList.get(i);
-            Ruling[] hv = intersectionPoints.get(topLeft);
+        RulingIntersections intersections = Ruling.findIntersectionPoints(horizontalRulingLines, verticalRulingLines);
 
-            List<Point2D> xPoints = new ArrayList<>();
-            List<Point2D> yPoints = new ArrayList<>();
+        // order the intersections like Y_FIRST_POINT_COMPARATOR does; points[i] is the i-th of them
+        int pointCount = intersections.size();
+        final float[] roundedXs = new float[pointCount];
+        final float[] roundedYs = new float[pointCount];
+        Integer[] order = new Integer[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            roundedXs[i] = Utils.round(intersections.getX(i), 2);
+            roundedYs[i] = Utils.round(intersections.getY(i), 2);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int compareY = Float.compare(roundedYs[a], roundedYs[b]);
+            return compareY != 0 ? compareY : Float.compare(roundedXs[a], roundedXs[b]);
+        });
+        int[] points = new int[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            points[i] = order[i];
+        }
+
+        // index the intersections by their column and row. Sorted as above, every intersection
+        // is followed in its column by the ones below it and in its row by the ones to its right.
+        List<List<Integer>> columnOf = new ArrayList<>(pointCount);
+        List<List<Integer>> rowOf = new ArrayList<>(pointCount);
+        int[] indexInColumn = new int[pointCount];
+        int[] indexInRow = new int[pointCount];
+        Map<Double, List<Integer>> columns = new HashMap<>();
+        Map<Double, List<Integer>> rows = new HashMap<>();
+        for (int i = 0; i < pointCount; i++) {
+            List<Integer> column = lineThrough(columns, intersections.getX(points[i]));
+            List<Integer> row = lineThrough(rows, intersections.getY(points[i]));
+            indexInColumn[i] = column.size();
+            indexInRow[i] = row.size();
+            column.add(i);
+            row.add(i);
+            columnOf.add(column);
+            rowOf.add(row);
+        }
+
+        for (int i = 0; i < pointCount; i++) {
+            int topLeft = points[i];
+            List<Integer> xPoints = columnOf.get(i).subList(indexInColumn[i] + 1, columnOf.get(i).size());
+            List<Integer> yPoints = rowOf.get(i).subList(indexInRow[i] + 1, rowOf.get(i).size());
 
-            for (Point2D p: intersectionPointsList.subList(i, intersectionPointsList.size())) {
-                if (p.getX() == topLeft.getX() && p.getY() > topLeft.getY()) {
-                    xPoints.add(p);
-                }
-                if (p.getY() == topLeft.getY() && p.getX() > topLeft.getX()) {
-                    yPoints.add(p);
-                }
-            }
             outer:
-            for (Point2D xPoint: xPoints) {
+            for (int xPoint: xPoints) {
+                int below = points[xPoint];
 
                 // is there a vertical edge b/w topLeft and xPoint?
-                if (!hv[1].equals(intersectionPoints.get(xPoint)[1])) {
+                if (!intersections.getVertical(topLeft).equals(intersections.getVertical(below))) {
                     continue;
                 }
-                for (Point2D yPoint: yPoints) {
+                for (int yPoint: yPoints) {
+                    int right = points[yPoint];
                     // is there an horizontal edge b/w topLeft and yPoint ?
-                    if (!hv[0].equals(intersectionPoints.get(yPoint)[0])) {
+                    if (!intersections.getHorizontal(topLeft).equals(intersections.getHorizontal(right))) {
                         continue;
                     }
-                    Point2D btmRight = new Point2D.Float((float) yPoint.getX(), (float) xPoint.getY());
-                    if (intersectionPoints.containsKey(btmRight) 
-                            && intersectionPoints.get(btmRight)[0].equals(intersectionPoints.get(xPoint)[0])
-                            && intersectionPoints.get(btmRight)[1].equals(intersectionPoints.get(yPoint)[1])) {
-                            cellsFound.add(new Cell(topLeft, btmRight));
+                    float btmRightX = intersections.getX(right);
+                    float btmRightY = intersections.getY(below);
+                    int btmRight = intersections.indexOf(btmRightX, btmRightY);
+                    if (btmRight >= 0
+                            && intersections.getHorizontal(btmRight).equals(intersections.getHorizontal(below))
+                            && intersections.getVertical(btmRight).equals(intersections.getVertical(right))) {
+                            cellsFound.add(new Cell(new Point2D.Float(intersections.getX(topLeft), intersections.getY(topLeft)),
+                                                    new Point2D.Float(btmRightX, btmRightY)));
                         break outer;
                     }
                 }
@@ -180,6 +219,17 @@ public class SpreadsheetExtractionAlgorithm implements ExtractionAlgorithm {
         return cellsFound;
     }
     
+    /**
+     * The indices of the intersections at {@code coordinate}; those at NaN are on no line with any other.
+     */
+    private static List<Integer> lineThrough(Map<Double, List<Integer>> lines, double coordinate) {
+        if (Double.isNaN(coordinate)) {
+            return new ArrayList<>();
+        }
+        // -0.0 and 0.0 are the same line
+        return lines.computeIfAbsent(coordinate == 0 ? 0.0 : coordinate, k -> new ArrayList<>());
+    }
+
     public static List<Rectangle> findSpreadsheetsFromCells(List<? extends Rectangle> cells) {
         // via: http://stackoverflow.com/questions/13746284/merging-multiple-adjacent-rectangles-into-one-polygon
         List<Rectangle> rectangles = new ArrayList<>();
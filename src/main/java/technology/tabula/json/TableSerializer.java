@@ -1,9 +1,7 @@
 package technology.tabula.json;
 
 import java.lang.reflect.Type;
-import java.util.List;
 
-import technology.tabula.RectangularTextContainer;
 import technology.tabula.Table;
 
 import com.google.gson.JsonArray;
@@ -32,10 +30,10 @@ public final class TableSerializer implements JsonSerializer<Table> {
         json.addProperty("bottom", table.getBottom());
         json.add("data", data);
 
-        for (List<RectangularTextContainer> tableRow : table.getRows()) {
+        for (int i = 0; i < table.getRowCount(); i++) {
             JsonArray jsonRow = new JsonArray();
-            for (RectangularTextContainer textChunk : tableRow)
-                jsonRow.add(context.serialize(textChunk));
+            for (int j = 0; j < table.getColCount(); j++)
+                jsonRow.add(context.serialize(table.getCell(i, j)));
             data.add(jsonRow);
         }
 
@@ -1,14 +1,12 @@
 package technology.tabula.writers;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVFormat;
 
-import technology.tabula.RectangularTextContainer;
 import technology.tabula.Table;
 
 public class CSVWriter implements Writer {
@@ -33,15 +31,40 @@ public class CSVWriter implements Writer {
     public void write(Appendable out, List<Table> tables) throws IOException {
         try (CSVPrinter printer = new CSVPrinter(out, format)) {
             for (Table table : tables) {
-                for (List<RectangularTextContainer> row : table.getRows()) {
-                    List<String> cells = new ArrayList<>(row.size());
-                    for (RectangularTextContainer<?> cell : row)
-                    	cells.add(cell.getText());
-                    printer.printRecord(cells);
-                }
+                printTable(printer, table);
             }
             printer.flush();
         }
     }
 
+    /**
+     * Prints every table as soon as it is appended and flushes {@code out}, so the rows of one page
+     * reach the reader before the next page is extracted.
+     */
+    @Override
+    public TableAppender open(Appendable out) throws IOException {
+        final CSVPrinter printer = new CSVPrinter(out, format);
+        return new TableAppender() {
+            @Override
+            public void append(Table table) throws IOException {
+                printTable(printer, table);
+                printer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                printer.flush();
+                printer.close();
+            }
+        };
+    }
+
+    private static void printTable(CSVPrinter printer, Table table) throws IOException {
+        for (int i = 0; i < table.getRowCount(); i++) {
+            for (int j = 0; j < table.getColCount(); j++)
+                printer.print(table.getCell(i, j).getText());
+            printer.println();
+        }
+    }
+
 }
@@ -13,6 +13,7 @@ import technology.tabula.TextChunk;
 import technology.tabula.json.RectangularTextContainerSerializer;
 import technology.tabula.json.TableSerializer;
 
+import java.io.Flushable;
 import java.io.IOException;
 import java.util.List;
 
@@ -47,7 +48,42 @@ public class JSONWriter implements Writer {
         out.append(gson.toJson(jsonElements));
     }
 
+    /**
+     * Writes the enclosing array incrementally: every appended table is serialized and flushed
+     * right away, and {@link TableAppender#close()} writes the closing bracket.
+     */
+    @Override
+    public TableAppender open(final Appendable out) throws IOException {
+        final Gson gson = gson();
+        out.append('[');
+        return new TableAppender() {
+            private boolean empty = true;
+
+            @Override
+            public void append(Table table) throws IOException {
+                if (!empty) {
+                    out.append(',');
+                }
+                empty = false;
+                out.append(gson.toJson(table, Table.class));
+                flush(out);
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.append(']');
+                flush(out);
+            }
+        };
+    }
+
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - //
+    private static void flush(Appendable out) throws IOException {
+        if (out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
     private static Gson gson() {
         return new GsonBuilder()
                 .addSerializationExclusionStrategy(ALL_CLASSES_SKIPPING_NON_PUBLIC_FIELDS)
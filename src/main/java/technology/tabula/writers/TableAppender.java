@@ -0,0 +1,16 @@
+package technology.tabula.writers;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import technology.tabula.Table;
+
+/**
+ * Receives the tables of a single output one at a time, see {@link Writer#open(Appendable)}.
+ * {@link #close()} completes the output; it must be called once all tables have been appended.
+ */
+public interface TableAppender extends Closeable {
+
+    void append(Table table) throws IOException;
+
+}
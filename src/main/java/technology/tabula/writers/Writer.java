@@ -1,6 +1,7 @@
 package technology.tabula.writers;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import technology.tabula.Table;
@@ -11,4 +12,27 @@ public interface Writer {
 
     void write(Appendable out, List<Table> tables) throws IOException;
 
+    /**
+     * Starts an output on {@code out} that tables can be appended to as soon as they are extracted.
+     * Once closed, {@code out} holds the same content {@link #write(Appendable, List)} would have written.
+     * <p>
+     * The default implementation keeps the tables until the appender is closed; writers able to
+     * emit tables incrementally override it.
+     */
+    default TableAppender open(final Appendable out) throws IOException {
+        return new TableAppender() {
+            private final List<Table> tables = new ArrayList<>();
+
+            @Override
+            public void append(Table table) {
+                tables.add(table);
+            }
+
+            @Override
+            public void close() throws IOException {
+                write(out, tables);
+            }
+        };
+    }
+
 }
@@ -42,4 +42,47 @@ public class TableTest {
 		assertEquals(10, table.getColCount());
 	}
 
+
+	@Test public void testAddRowLikeAddingCellByCell() {
+		Table byRow = Table.empty();
+		Table byCell = Table.empty();
+
+		TextChunk first = new TextChunk(10, 20, 30, 5);
+		TextChunk third = new TextChunk(10, 80, 20, 5);
+		byRow.addRow(2, new RectangularTextContainer[] { first, null, third, null });
+		byCell.add(first, 2, 0);
+		byCell.add(third, 2, 2);
+
+		assertEquals(byCell.getRowCount(), byRow.getRowCount());
+		assertEquals(3, byRow.getColCount());
+		assertEquals(byCell.getRows(), byRow.getRows());
+		assertEquals(TextChunk.EMPTY, byRow.getCell(2, 1));
+		assertEquals(byCell, byRow);
+	}
+
+
+	@Test public void testCellsStayInPlaceAsTheTableGrows() {
+		Table table = Table.empty();
+		TextChunk[][] expected = new TextChunk[50][7];
+		for (int n = 0; n < 200; n++) {
+			// rows and columns in no particular order, so both grow after cells are in
+			int row = (n * 37) % 50, col = (n * 3) % 7;
+			if (expected[row][col] != null) continue;
+			expected[row][col] = new TextChunk(row * 10, col * 10, 5, 5);
+			table.add(expected[row][col], row, col);
+		}
+
+		assertEquals(50, table.getRowCount());
+		assertEquals(7, table.getColCount());
+		for (int row = 0; row < 50; row++) {
+			for (int col = 0; col < 7; col++) {
+				RectangularTextContainer cell = expected[row][col] != null ? expected[row][col] : TextChunk.EMPTY;
+				assertSame(cell, table.getCell(row, col));
+				assertSame(cell, table.getRows().get(row).get(col));
+			}
+		}
+		assertEquals(TextChunk.EMPTY, table.getCell(50, 0));
+		assertEquals(TextChunk.EMPTY, table.getCell(0, 7));
+	}
+
 }
@@ -6,7 +6,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -167,6 +169,38 @@ public class TestBasicExtractor {
         page.getPDDoc().close();
     }
 
+    @Test
+    public void testAreaTextKeepsThePageOrder() throws IOException {
+        // an area gets its text in the order of the whole page, so it splits into the same chunks
+        Page page = UtilsForTesting.getAreaFromPage(
+                "src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-us/us-001.pdf", 1,
+                50f, 30f, 752f, 592f);
+        Table table = new BasicExtractionAlgorithm().extract(page).get(0);
+        List<RectangularTextContainer> firstRow = table.getRows().get(0);
+
+        assertEquals(1, firstRow.size());
+        assertEquals("quarters had a disability in 2010.8 303.9 million in the civilian non- had a severe disability (Table 1).",
+                firstRow.get(0).getText());
+        page.getPDDoc().close();
+    }
+
+    @Test
+    public void testDetectedAreaKeepsRowsTogether() throws IOException {
+        // the area --guess finds on the page
+        Page page = UtilsForTesting.getAreaFromPage(
+                "src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-us/us-015.pdf", 2,
+                305f, 83f, 709f, 550f);
+        Table table = new BasicExtractionAlgorithm().extract(page).get(0);
+        String[][] rows = UtilsForTesting.tableToArrayOfRows(table);
+
+        assertEquals("Reproducibility", rows[8][0]);
+        assertEquals("Unstable scores over time when thiesr en o logical reason for variation from", rows[8][3]);
+        assertEquals("characteristic)", rows[15][3]);
+        assertEquals("Redundancy", rows[16][0]);
+        assertEquals("Item duplicates infromation collected with otheitre ms that have equal or", rows[16][3]);
+        page.getPDDoc().close();
+    }
+
     @Test
     public void testExtractColumnsCorrectly() throws IOException {
         Page page = UtilsForTesting.getAreaFromPage(EU_002_PDF, 1, 115.0f, 70.0f, 233.0f, 510.0f);
@@ -217,7 +251,7 @@ public class TestBasicExtractor {
                 page.getVerticalRulings());
         Table table = bea.extract(page).get(0);
 
-        List<RectangularTextContainer> cells = new ArrayList<>(table.cells.values());
+        List<RectangularTextContainer> cells = table.cells();
         for (RectangularTextContainer rectangularTextContainer : cells) {
             System.out.println(rectangularTextContainer.getText());
         }
@@ -349,4 +383,76 @@ public class TestBasicExtractor {
         assertEquals(expectedCsv, sb.toString());
     }
 
+
+    @Test
+    public void testColumnPositionsMatchRegionByRegionMerge() throws IOException {
+        Random random = new Random(42);
+        List<Line> lines = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Line line = new Line();
+            for (int j = 0; j < 20; j++) {
+                // chunks of varied widths, some of them overlapping several columns
+                float left = random.nextInt(2000) / 4f;
+                float width = random.nextInt(10) == 0 ? random.nextInt(400) / 4f : random.nextInt(80) / 4f;
+                line.addTextChunk(new TextChunk(new TextElement(i * 10, left, width, 8, null, 8, "x", 2)));
+            }
+            line.addTextChunk(new TextChunk(new TextElement(i * 10, random.nextInt(500), 2, 8, null, 8, " ", 2)));
+            lines.add(line);
+        }
+        assertEquals(regionByRegionColumnPositions(lines), BasicExtractionAlgorithm.columnPositions(lines));
+
+        Page page = UtilsForTesting.getAreaFromFirstPage(ARGENTINA_DIPUTADOS_VOTING_RECORD_PDF, 269.875f, 12.75f, 790.5f, 561f);
+        lines = TextChunk.groupByLines(TextElement.mergeWords(page.getText()));
+        assertEquals(regionByRegionColumnPositions(lines), BasicExtractionAlgorithm.columnPositions(lines));
+        page.getPDDoc().close();
+    }
+
+    // the column inference BasicExtractionAlgorithm used to do
+    private static List<Float> regionByRegionColumnPositions(List<Line> lines) {
+        List<Rectangle> regions = new ArrayList<>();
+        for (TextChunk tc: lines.get(0).getTextElements()) {
+            if (tc.isSameChar(Line.WHITE_SPACE_CHARS)) {
+                continue;
+            }
+            Rectangle r = new Rectangle();
+            r.setRect(tc);
+            regions.add(r);
+        }
+
+        for (Line l: lines.subList(1, lines.size())) {
+            List<TextChunk> lineTextElements = new ArrayList<>();
+            for (TextChunk tc: l.getTextElements()) {
+                if (!tc.isSameChar(Line.WHITE_SPACE_CHARS)) {
+                    lineTextElements.add(tc);
+                }
+            }
+
+            for (Rectangle cr: regions) {
+                List<TextChunk> overlaps = new ArrayList<>();
+                for (TextChunk te: lineTextElements) {
+                    if (cr.horizontallyOverlaps(te)) {
+                        overlaps.add(te);
+                    }
+                }
+                for (TextChunk te: overlaps) {
+                    cr.merge(te);
+                }
+                lineTextElements.removeAll(overlaps);
+            }
+
+            for (TextChunk te: lineTextElements) {
+                Rectangle r = new Rectangle();
+                r.setRect(te);
+                regions.add(r);
+            }
+        }
+
+        List<Float> rv = new ArrayList<>();
+        for (Rectangle r: regions) {
+            rv.add(r.getRight());
+        }
+        Collections.sort(rv);
+        return rv;
+    }
+
 }
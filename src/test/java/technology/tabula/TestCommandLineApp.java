@@ -66,6 +66,35 @@ public class TestCommandLineApp {
         assertArrayEquals(expectedCsv.getBytes(), Files.readAllBytes(csvPath));
     }
 
+    @Test
+    public void testExtractBatchWithThreadsIsolatesFailures() throws ParseException, IOException {
+        FileSystem fs = FileSystems.getDefault();
+        String expectedCsv = UtilsForTesting.loadCsv("src/test/resources/technology/tabula/csv/spreadsheet_no_bounding_frame.csv");
+        Path tmpFolder = folder.newFolder().toPath();
+
+        Path sourcePDF = fs.getPath("src/test/resources/technology/tabula/spreadsheet_no_bounding_frame.pdf");
+        Files.copy(sourcePDF, tmpFolder.resolve("spreadsheet1.pdf"));
+        Files.copy(sourcePDF, tmpFolder.resolve("spreadsheet2.pdf"));
+        Files.write(tmpFolder.resolve("broken.pdf"), "not a pdf".getBytes());
+
+        try {
+            this.csvFromCommandLineArgs(new String[]{
+                    "-b", tmpFolder.toString(),
+                    "-p", "1", "-a",
+                    "150.56,58.9,654.7,536.12", "-f",
+                    "CSV", "-j", "2"
+            });
+            fail("Expected the broken file to be reported");
+        } catch (ParseException e) {
+            assertEquals("1 of 3 files could not be extracted", e.getMessage());
+        }
+
+        assertArrayEquals(expectedCsv.getBytes(), Files.readAllBytes(tmpFolder.resolve("spreadsheet1.csv")));
+        assertArrayEquals(expectedCsv.getBytes(), Files.readAllBytes(tmpFolder.resolve("spreadsheet2.csv")));
+        assertFalse(tmpFolder.resolve("broken.csv").toFile().exists());
+        assertEquals(5, tmpFolder.toFile().list().length);
+    }
+
     @Test
     public void testExtractSpreadsheetWithAreaAndNewFile() throws ParseException, IOException {
 
@@ -216,4 +245,43 @@ public class TestCommandLineApp {
         assertEquals(expectedJson, resultJson);
     }
 
+    @Test
+    public void testExtractWithThreads() throws ParseException {
+        String pdf = "src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-us/us-017.pdf";
+
+        String expectedCsv = this.csvFromCommandLineArgs(new String[]{
+                pdf, "-p", "all", "-f", "CSV"
+        });
+
+        assertEquals(expectedCsv, this.csvFromCommandLineArgs(new String[]{
+                pdf, "-p", "all", "-f", "CSV", "-j", "4"
+        }));
+    }
+
+    @Test
+    public void testExtractWithMaxRulings() throws ParseException {
+        String pdf = "src/test/resources/technology/tabula/spanning_cells.pdf";
+
+        String lattice = this.csvFromCommandLineArgs(new String[]{ pdf, "-l", "-f", "CSV" });
+        assertEquals(lattice, this.csvFromCommandLineArgs(new String[]{ pdf, "-l", "-f", "CSV", "-m", "100000" }));
+        // without rulings, lattice mode finds no table
+        assertEquals("", this.csvFromCommandLineArgs(new String[]{ pdf, "-l", "-f", "CSV", "-m", "0" }));
+    }
+
+    @Test(expected=org.apache.commons.cli.ParseException.class)
+    public void testExtractWithInvalidMaxRulings() throws ParseException {
+        this.csvFromCommandLineArgs(new String[]{
+                "src/test/resources/technology/tabula/spanning_cells.pdf",
+                "--max-rulings", "-1"
+        });
+    }
+
+    @Test(expected=org.apache.commons.cli.ParseException.class)
+    public void testExtractWithInvalidThreads() throws ParseException {
+        this.csvFromCommandLineArgs(new String[]{
+                "src/test/resources/technology/tabula/spanning_cells.pdf",
+                "-j", "0"
+        });
+    }
+
 }
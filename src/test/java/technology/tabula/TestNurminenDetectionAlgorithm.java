@@ -0,0 +1,200 @@
+package technology.tabula;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.Test;
+
+import technology.tabula.detectors.NurminenDetectionAlgorithm;
+import technology.tabula.detectors.NurminenDetectionAlgorithm.ImageRendering;
+
+public class TestNurminenDetectionAlgorithm {
+
+    @Test
+    public void testLargePageDetectsLikeSmallPage() throws IOException {
+        // the same table, as far from the top left corner, on a page rendered whole and on one
+        // large enough to be rendered only where something is drawn
+        List<Rectangle> expected = detectTable(PDRectangle.A4, false, ImageRendering.DECODED);
+        List<Rectangle> detected = detectTable(PDRectangle.A2, false, ImageRendering.DECODED);
+
+        assertEquals(1, expected.size());
+        assertEquals(expected, detected);
+    }
+
+    @Test
+    public void testImagesAreNotDecoded() throws IOException {
+        // the image below the table can't be decoded, the renderer logs a warning when it tries to
+        List<Rectangle> expected = detectTable(PDRectangle.A4, false, ImageRendering.DECODED);
+        assertEquals(1, expected.size());
+
+        Logger logger = Logger.getLogger(PDFStreamEngine.class.getName());
+        final List<LogRecord> warnings = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                    warnings.add(record);
+                }
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        logger.addHandler(handler);
+        try {
+            assertEquals(expected, detectTable(PDRectangle.A4, true, ImageRendering.SKIPPED));
+            assertEquals(expected, detectTable(PDRectangle.A4, true, ImageRendering.BOUNDING_BOX));
+            assertTrue(warnings.isEmpty());
+
+            detectTable(PDRectangle.A4, true, ImageRendering.DECODED);
+            assertFalse(warnings.isEmpty());
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    @Test
+    public void testDetectsTheSameTablesOnAPool() throws IOException {
+        File pdf = new File("src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-eu/eu-001.pdf");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        int tables = 0;
+        try (ObjectExtractor oe = new ObjectExtractor(PDDocument.load(pdf))) {
+            NurminenDetectionAlgorithm sequential = new NurminenDetectionAlgorithm();
+            NurminenDetectionAlgorithm concurrent = new NurminenDetectionAlgorithm(ImageRendering.DECODED, executor);
+            PageIterator pages = oe.extract();
+            while (pages.hasNext()) {
+                Page page = pages.next();
+                List<Rectangle> expected = sequential.detect(page);
+                assertEquals(expected, concurrent.detect(page));
+                tables += expected.size();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(tables > 0);
+    }
+
+    @Test
+    public void testSharedDetectorRendersEachThreadsOwnDocument() throws Exception {
+        final String[] pdfs = {
+                "src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-eu/eu-001.pdf",
+                "src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-eu/eu-004.pdf" };
+        final List<List<Rectangle>> expected = new ArrayList<>();
+        for (String pdf : pdfs) {
+            expected.add(detectAll(pdf, new NurminenDetectionAlgorithm()));
+        }
+
+        final NurminenDetectionAlgorithm shared = new NurminenDetectionAlgorithm();
+        ExecutorService executor = Executors.newFixedThreadPool(pdfs.length);
+        try {
+            List<Future<List<Rectangle>>> detected = new ArrayList<>();
+            for (final String pdf : pdfs) {
+                detected.add(executor.submit(new Callable<List<Rectangle>>() {
+                    @Override
+                    public List<Rectangle> call() throws IOException {
+                        List<Rectangle> rv = new ArrayList<>();
+                        for (int round = 0; round < 3; round++) {
+                            rv = detectAll(pdf, shared);
+                        }
+                        return rv;
+                    }
+                }));
+            }
+            for (int i = 0; i < pdfs.length; i++) {
+                assertFalse(expected.get(i).isEmpty());
+                assertEquals(expected.get(i), detected.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Rectangle> detectAll(String pdf, NurminenDetectionAlgorithm detector) throws IOException {
+        List<Rectangle> rv = new ArrayList<>();
+        try (ObjectExtractor oe = new ObjectExtractor(PDDocument.load(new File(pdf)))) {
+            PageIterator pages = oe.extract();
+            while (pages.hasNext()) {
+                rv.addAll(detector.detect(pages.next()));
+            }
+        }
+        return rv;
+    }
+
+    private static List<Rectangle> detectTable(PDRectangle mediaBox, boolean withImage, ImageRendering imageRendering)
+            throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(mediaBox);
+            document.addPage(page);
+            float top = mediaBox.getHeight() - 100;
+            try (PDPageContentStream contents = new PDPageContentStream(document, page)) {
+                contents.setLineWidth(0.5f);
+                for (int row = 0; row < 8; row++) {
+                    for (int column = 0; column < 4; column++) {
+                        contents.addRect(60 + column * 100, top - (row + 1) * 20, 100, 20);
+                    }
+                }
+                contents.stroke();
+                contents.beginText();
+                contents.setFont(PDType1Font.HELVETICA, 10);
+                for (int row = 0; row < 8; row++) {
+                    for (int column = 0; column < 4; column++) {
+                        contents.newLineAtOffset(column == 0 ? (row == 0 ? 65 : -300) : 100,
+                                column == 0 ? (row == 0 ? top - 14 : -20) : 0);
+                        contents.showText("Cell " + row + "." + column);
+                    }
+                }
+                contents.endText();
+                if (withImage) {
+                    contents.drawImage(undecodableImage(document), 60, top - 400, 400, 200);
+                }
+            }
+
+            try (ObjectExtractor oe = new ObjectExtractor(document)) {
+                return new ArrayList<>(new NurminenDetectionAlgorithm(imageRendering).detect(oe.extract(1)));
+            }
+        }
+    }
+
+    private static PDImageXObject undecodableImage(PDDocument document) throws IOException {
+        COSStream stream = document.getDocument().createCOSStream();
+        try (OutputStream out = stream.createRawOutputStream()) {
+            out.write("not a JPEG".getBytes("US-ASCII"));
+        }
+        stream.setItem(COSName.FILTER, COSName.DCT_DECODE);
+        stream.setItem(COSName.SUBTYPE, COSName.IMAGE);
+        stream.setInt(COSName.WIDTH, 400);
+        stream.setInt(COSName.HEIGHT, 200);
+        stream.setInt(COSName.BITS_PER_COMPONENT, 8);
+        stream.setItem(COSName.COLORSPACE, COSName.DEVICEGRAY);
+        return new PDImageXObject(new PDStream(stream), null);
+    }
+
+}
@@ -4,10 +4,20 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
 import org.junit.Test;
 
 public class TestObjectExtractor {
@@ -136,6 +146,269 @@ public class TestObjectExtractor {
 
     }
 
+    @Test
+    public void testTextElementsMatchTextStripper() throws IOException {
+        String[] pdfs = {
+                "src/test/resources/technology/tabula/rotated_page.pdf",
+                "src/test/resources/technology/tabula/us-017.pdf",
+                "src/test/resources/technology/tabula/arabic.pdf" };
+        for (String pdf : pdfs) {
+            try (PDDocument pdf_document = PDDocument.load(new File(pdf))) {
+                PDPage pdPage = pdf_document.getPage(0);
+                ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(pdPage);
+                streamEngine.processPage(pdPage);
+                TextStripper textStripper = new TextStripper(pdf_document, 1);
+                textStripper.getText(pdf_document);
+
+                List<TextElement> expected = textStripper.getTextElements();
+                List<TextElement> actual = streamEngine.getTextElements();
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getText(), actual.get(i).getText());
+                    assertEquals(expected.get(i).getBounds2D(), actual.get(i).getBounds2D());
+                }
+                assertEquals(textStripper.getMinCharWidth(), streamEngine.getMinCharWidth(), 0);
+                assertEquals(textStripper.getMinCharHeight(), streamEngine.getMinCharHeight(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testSortedGlyphBufferMatchesSortedElements() throws IOException {
+        try (PDDocument pdf_document = PDDocument.load(new File("src/test/resources/technology/tabula/us-017.pdf"))) {
+            PDPage pdPage = pdf_document.getPage(0);
+            ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(pdPage);
+            streamEngine.processPage(pdPage);
+
+            List<TextElement> unsorted = new ArrayList<>(streamEngine.getTextElements());
+            List<TextElement> expected = new ArrayList<>(unsorted);
+            Utils.sort(expected, Rectangle.ILL_DEFINED_ORDER);
+            streamEngine.sortTextElements(Rectangle.ILL_DEFINED_ORDER);
+
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, streamEngine.getTextElements());
+        }
+    }
+
+    @Test
+    public void testGlyphIndexMatchesIndexOverElements() throws IOException {
+        try (PDDocument pdf_document = PDDocument.load(new File("src/test/resources/technology/tabula/us-017.pdf"))) {
+            PDPage pdPage = pdf_document.getPage(0);
+            for (boolean sorted : new boolean[] { false, true }) {
+                ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(pdPage);
+                streamEngine.processPage(pdPage);
+                RectangleSpatialIndex<TextElement> overElements =
+                        new PackedRectangleSpatialIndex<>(new ArrayList<>(streamEngine.getTextElements()));
+                if (sorted) {
+                    streamEngine.sortTextElements(Rectangle.ILL_DEFINED_ORDER);
+                }
+                RectangleSpatialIndex<TextElement> overGlyphs = streamEngine.getSpatialIndex();
+
+                for (float top = 0; top < 800; top += 61) {
+                    for (float left = 0; left < 600; left += 67) {
+                        Rectangle area = new Rectangle(top, left, 150, 70);
+                        assertEquals(overElements.contains(area), overGlyphs.contains(area));
+                        assertEquals(overElements.intersects(area), overGlyphs.intersects(area));
+                    }
+                }
+                Rectangle page = new Rectangle(0, 0, 1000, 1000);
+                assertEquals(overElements.contains(page), overGlyphs.contains(page));
+            }
+        }
+    }
+
+    @Test
+    public void testCurrentClippingPathIsACopyOfTheTransformedBounds() throws IOException {
+        try (PDDocument pdf_document = PDDocument.load(new File("src/test/resources/technology/tabula/us-017.pdf"))) {
+            PDPage pdPage = pdf_document.getPage(0);
+            ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(pdPage);
+            streamEngine.processPage(pdPage);
+
+            java.awt.geom.Rectangle2D expected = streamEngine.getPageTransform()
+                    .createTransformedShape(streamEngine.getGraphicsState().getCurrentClippingPath()).getBounds2D();
+            java.awt.geom.Rectangle2D bounds = streamEngine.currentClippingPath();
+            assertEquals(expected, bounds);
+
+            bounds.setRect(0, 0, 1, 1);
+            assertEquals(expected, streamEngine.currentClippingPath());
+        }
+    }
+
+    @Test
+    public void testRulingIngestionPolicy() throws IOException {
+        File pdf = new File("src/test/resources/technology/tabula/spanning_cells.pdf");
+        List<Ruling> all;
+        try (ObjectExtractor oe = new ObjectExtractor(PDDocument.load(pdf))) {
+            all = oe.extractPage(1).getUnprocessedRulings();
+        }
+        List<Ruling> expected = new ArrayList<>();
+        for (Ruling ruling : all) {
+            if (!ruling.oblique() && !expected.contains(ruling)) {
+                expected.add(ruling);
+            }
+        }
+        int budget = expected.size() / 2;
+        assertTrue(budget > 0);
+
+        RulingIngestionPolicy policy = RulingIngestionPolicy.Builder.newInstance()
+                .withObliqueDropped(true)
+                .withDuplicatesDropped(true)
+                .withMaximumRulings(budget)
+                .build();
+        Page page;
+        try (ObjectExtractor oe = new ObjectExtractor(PDDocument.load(pdf), policy)) {
+            page = oe.extractPage(1);
+        }
+
+        // the first rulings drawn are kept, the rest are only counted, duplicates included
+        assertEquals(expected.subList(0, budget), page.getUnprocessedRulings());
+        assertTrue(page.getDroppedRulingCount() >= expected.size() - budget);
+    }
+
+    @Test
+    public void testFormXObjectCacheReplaysSharedForms() throws IOException {
+        try (PDDocument pdf_document = new PDDocument()) {
+            // an appearance stream is the only form PDPageContentStream writes to
+            PDAppearanceStream form = new PDAppearanceStream(pdf_document);
+            form.setBBox(PDRectangle.LETTER);
+            form.setResources(new PDResources());
+            try (PDPageContentStream contents = new PDPageContentStream(pdf_document, form)) {
+                for (int i = 0; i < 4; i++) {
+                    contents.addRect(50, 600 - i * 20, 300, 20);
+                }
+                contents.stroke();
+                contents.beginText();
+                contents.setFont(PDType1Font.HELVETICA, 10);
+                contents.newLineAtOffset(55, 605);
+                contents.showText("Letterhead");
+                contents.endText();
+            }
+            for (int i = 0; i < 4; i++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                pdf_document.addPage(page);
+                try (PDPageContentStream contents = new PDPageContentStream(pdf_document, page)) {
+                    if (i == 1) {
+                        // shown elsewhere, so it isn't recorded or replayed
+                        contents.transform(org.apache.pdfbox.util.Matrix.getTranslateInstance(0, -100));
+                    }
+                    contents.drawForm(form);
+                }
+            }
+
+            FormXObjectCache formCache = new FormXObjectCache();
+            for (PDPage page : pdf_document.getPages()) {
+                ObjectExtractorStreamEngine uncached = new ObjectExtractorStreamEngine(page);
+                uncached.processPage(page);
+                ObjectExtractorStreamEngine cached = new ObjectExtractorStreamEngine(page, RulingIngestionPolicy.DEFAULT, formCache);
+                cached.processPage(page);
+
+                assertFalse(uncached.rulings.isEmpty());
+                assertEquals(uncached.rulings, cached.rulings);
+                assertEquals(uncached.getTextElements().size(), cached.getTextElements().size());
+                for (int i = 0; i < uncached.getTextElements().size(); i++) {
+                    assertEquals(uncached.getTextElements().get(i).getText(), cached.getTextElements().get(i).getText());
+                    assertEquals(uncached.getTextElements().get(i).getBounds2D(), cached.getTextElements().get(i).getBounds2D());
+                }
+            }
+            // recorded the second time it was shown in the same place, replayed the third
+            assertEquals(1, formCache.size());
+        }
+    }
+
+    @Test
+    public void testFormXObjectCacheTellsApartTheResourcesAFormInherits() throws IOException {
+        try (PDDocument pdf_document = new PDDocument()) {
+            // no resources of its own, so /F1 is whatever font the page showing it calls that
+            PDFormXObject form = new PDFormXObject(pdf_document);
+            form.setBBox(PDRectangle.LETTER);
+            try (OutputStream out = form.getCOSObject().createOutputStream()) {
+                out.write("BT /F1 12 Tf 50 700 Td (Inherited font) Tj ET".getBytes(StandardCharsets.US_ASCII));
+            }
+            PDType1Font[] fonts = { PDType1Font.HELVETICA, PDType1Font.COURIER };
+            for (int i = 0; i < fonts.length; i++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                PDResources resources = new PDResources();
+                resources.put(COSName.getPDFName("F1"), fonts[i]);
+                page.setResources(resources);
+                pdf_document.addPage(page);
+                try (PDPageContentStream contents = new PDPageContentStream(pdf_document, page)) {
+                    // shown twice on the first page, so it is recorded there
+                    for (int j = 0; j < (i == 0 ? 2 : 1); j++) {
+                        contents.drawForm(form);
+                    }
+                }
+            }
+
+            FormXObjectCache formCache = new FormXObjectCache();
+            for (PDPage page : pdf_document.getPages()) {
+                ObjectExtractorStreamEngine uncached = new ObjectExtractorStreamEngine(page);
+                uncached.processPage(page);
+                ObjectExtractorStreamEngine cached = new ObjectExtractorStreamEngine(page, RulingIngestionPolicy.DEFAULT, formCache);
+                cached.processPage(page);
+
+                assertFalse(uncached.getTextElements().isEmpty());
+                assertEquals(uncached.getTextElements().size(), cached.getTextElements().size());
+                for (int i = 0; i < uncached.getTextElements().size(); i++) {
+                    assertEquals(uncached.getTextElements().get(i).getFont(), cached.getTextElements().get(i).getFont());
+                    assertEquals(uncached.getTextElements().get(i).getBounds2D(), cached.getTextElements().get(i).getBounds2D());
+                }
+            }
+            assertEquals(1, formCache.size());
+        }
+    }
+
+    @Test
+    public void testFormXObjectCacheKeepsItsCapacity() throws IOException {
+        try (PDDocument pdf_document = new PDDocument()) {
+            PDAppearanceStream form = new PDAppearanceStream(pdf_document);
+            form.setBBox(PDRectangle.LETTER);
+            form.setResources(new PDResources());
+            try (PDPageContentStream contents = new PDPageContentStream(pdf_document, form)) {
+                contents.beginText();
+                contents.setFont(PDType1Font.HELVETICA, 10);
+                contents.newLineAtOffset(55, 605);
+                contents.showText("Letterhead");
+                contents.endText();
+            }
+            PDPage page = new PDPage(PDRectangle.LETTER);
+            pdf_document.addPage(page);
+            try (PDPageContentStream contents = new PDPageContentStream(pdf_document, page)) {
+                contents.drawForm(form);
+                contents.drawForm(form);
+            }
+
+            // too small for the form's ten glyphs
+            FormXObjectCache formCache = new FormXObjectCache(9);
+            new ObjectExtractorStreamEngine(page, RulingIngestionPolicy.DEFAULT, formCache).processPage(page);
+            assertEquals(0, formCache.size());
+
+            formCache = new FormXObjectCache(10);
+            new ObjectExtractorStreamEngine(page, RulingIngestionPolicy.DEFAULT, formCache).processPage(page);
+            assertEquals(1, formCache.size());
+        }
+    }
+
+    @Test
+    public void testTextStripperProcessesOnlyItsPage() throws IOException {
+        PDDocument pdf_document = PDDocument.load(new File("src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-eu/eu-004.pdf"));
+        try {
+            int lastPage = pdf_document.getNumberOfPages();
+            TextStripper pageStripper = new TextStripper(pdf_document.getPage(lastPage - 1));
+            pageStripper.process();
+            TextStripper documentStripper = new TextStripper(pdf_document, lastPage);
+            documentStripper.getText(pdf_document);
+
+            assertFalse(pageStripper.getTextElements().isEmpty());
+            assertEquals(documentStripper.getTextElements().size(), pageStripper.getTextElements().size());
+
+            TextStripper outOfRange = new TextStripper(pdf_document, lastPage + 1);
+            outOfRange.process();
+            assertTrue(outOfRange.getTextElements().isEmpty());
+        } finally {
+            pdf_document.close();
+        }
+    }
+
     @Test public void testDoNotNPEInPointComparator() throws IOException {
         PDDocument pdf_document = PDDocument.load(new File("src/test/resources/technology/tabula/npe_issue_206.pdf"));
 
@@ -146,4 +419,51 @@ public class TestObjectExtractor {
             fail("NPE in ObjectExtractor " + e.toString());
         }
     }
+
+    @Test
+    public void testExtractPagesInParallelKeepsPageOrder() throws IOException {
+        final File pdf = new File("src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-eu/eu-004.pdf");
+        PDDocument pdf_document = PDDocument.load(pdf);
+
+        try (ObjectExtractor oe = new ObjectExtractor(pdf_document)) {
+            List<Integer> pageNumbers = Utils.range(1, pdf_document.getNumberOfPages() + 1);
+
+            List<Integer> sequential = new ArrayList<>();
+            PageIterator pi = oe.extract(pageNumbers);
+            while (pi.hasNext()) {
+                sequential.add(pi.next().getText().size());
+            }
+
+            List<Integer> parallelPageNumbers = oe.extract(pageNumbers, 4, () -> PDDocument.load(pdf), Page::getPageNumber);
+            List<Integer> parallel = oe.extract(pageNumbers, 4, () -> PDDocument.load(pdf), page -> page.getText().size());
+
+            assertEquals(pageNumbers, parallelPageNumbers);
+            assertEquals(sequential, parallel);
+        }
+    }
+
+    @Test
+    public void testStreamPagesInParallelKeepsPageOrder() throws IOException {
+        final File pdf = new File("src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-eu/eu-004.pdf");
+        PDDocument pdf_document = PDDocument.load(pdf);
+
+        try (ObjectExtractor oe = new ObjectExtractor(pdf_document)) {
+            List<Integer> pageNumbers = Utils.range(1, pdf_document.getNumberOfPages() + 1);
+            final List<Integer> handled = new ArrayList<>();
+
+            oe.extract(pageNumbers, 2, () -> PDDocument.load(pdf), Page::getPageNumber, handled::add);
+
+            assertEquals(pageNumbers, handled);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testExtractWrongPageNumberInParallel() throws IOException {
+        final File pdf = new File("src/test/resources/technology/tabula/S2MNCEbirdisland.pdf");
+        PDDocument pdf_document = PDDocument.load(pdf);
+
+        try (ObjectExtractor oe = new ObjectExtractor(pdf_document)) {
+            oe.extract(Utils.range(1, 4), 2, () -> PDDocument.load(pdf), Page::getPageNumber);
+        }
+    }
 }
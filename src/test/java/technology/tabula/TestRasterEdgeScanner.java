@@ -0,0 +1,137 @@
+package technology.tabula;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.junit.Test;
+
+import technology.tabula.detectors.RasterEdgeScanner;
+
+public class TestRasterEdgeScanner {
+
+    private static final int THRESHOLD = 25;
+
+    @Test
+    public void testMatchesPixelByPixelScanOnDrawnImage() {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 300, 200);
+        Random random = new Random(42);
+        for (int i = 0; i < 40; i++) {
+            graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            graphics.drawRect(random.nextInt(250), random.nextInt(150), random.nextInt(120), random.nextInt(80));
+            graphics.fillRect(random.nextInt(280), random.nextInt(180), random.nextInt(20), random.nextInt(20));
+        }
+        graphics.dispose();
+
+        assertScansMatch(image, 50, 10);
+        assertScansMatch(image, 5, 2);
+    }
+
+    @Test
+    public void testMatchesPixelByPixelScanOnRenderedPage() throws IOException {
+        try (PDDocument document = PDDocument.load(new File("src/test/resources/technology/tabula/spanning_cells.pdf"))) {
+            BufferedImage image = Utils.pageConvertToImage(document, document.getPage(0), 144, ImageType.GRAY);
+            assertScansMatch(image, 50, 10);
+        }
+    }
+
+    private static void assertScansMatch(BufferedImage image, int minimumWidth, int minimumHeight) {
+        RasterEdgeScanner scanner = new RasterEdgeScanner(image);
+        List<Ruling> horizontal = horizontalEdges(image.getRaster(), minimumWidth);
+        List<Ruling> vertical = verticalEdges(image.getRaster(), minimumHeight);
+        assertFalse(horizontal.isEmpty());
+        assertFalse(vertical.isEmpty());
+        assertEquals(horizontal, scanner.getHorizontalEdges(THRESHOLD, minimumWidth));
+        assertEquals(vertical, scanner.getVerticalEdges(THRESHOLD, minimumHeight));
+    }
+
+    // the scans NurminenDetectionAlgorithm used to do
+    private static List<Ruling> horizontalEdges(Raster r, int minimumWidth) {
+        List<Ruling> rulings = new ArrayList<>();
+        for (int x = 0; x < r.getWidth(); x++) {
+            int[] lastPixel = r.getPixel(x, 0, (int[]) null);
+            for (int y = 1; y < r.getHeight() - 1; y++) {
+                int[] currPixel = r.getPixel(x, y, (int[]) null);
+                if (Math.abs(currPixel[0] - lastPixel[0]) > THRESHOLD) {
+                    boolean alreadyChecked = false;
+                    for (Line2D.Float line : rulings) {
+                        if (y == line.getY1() && x >= line.getX1() && x <= line.getX2()) {
+                            alreadyChecked = true;
+                            break;
+                        }
+                    }
+                    if (!alreadyChecked) {
+                        int lineX = x + 1;
+                        while (lineX < r.getWidth()) {
+                            int[] linePixel = r.getPixel(lineX, y, (int[]) null);
+                            int[] abovePixel = r.getPixel(lineX, y - 1, (int[]) null);
+                            if (Math.abs(linePixel[0] - abovePixel[0]) <= THRESHOLD
+                                    || Math.abs(currPixel[0] - linePixel[0]) > THRESHOLD) {
+                                break;
+                            }
+                            lineX++;
+                        }
+                        if (lineX - 1 - x > minimumWidth) {
+                            rulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(lineX - 1, y)));
+                        }
+                    }
+                }
+                lastPixel = currPixel;
+            }
+        }
+        return rulings;
+    }
+
+    private static List<Ruling> verticalEdges(Raster r, int minimumHeight) {
+        List<Ruling> rulings = new ArrayList<>();
+        for (int y = 0; y < r.getHeight(); y++) {
+            int[] lastPixel = r.getPixel(0, y, (int[]) null);
+            for (int x = 1; x < r.getWidth() - 1; x++) {
+                int[] currPixel = r.getPixel(x, y, (int[]) null);
+                if (Math.abs(currPixel[0] - lastPixel[0]) > THRESHOLD) {
+                    boolean alreadyChecked = false;
+                    for (Line2D.Float line : rulings) {
+                        if (x == line.getX1() && y >= line.getY1() && y <= line.getY2()) {
+                            alreadyChecked = true;
+                            break;
+                        }
+                    }
+                    if (!alreadyChecked) {
+                        int lineY = y + 1;
+                        while (lineY < r.getHeight()) {
+                            int[] linePixel = r.getPixel(x, lineY, (int[]) null);
+                            int[] leftPixel = r.getPixel(x - 1, lineY, (int[]) null);
+                            if (Math.abs(linePixel[0] - leftPixel[0]) <= THRESHOLD
+                                    || Math.abs(currPixel[0] - linePixel[0]) > THRESHOLD) {
+                                break;
+                            }
+                            lineY++;
+                        }
+                        if (lineY - 1 - y > minimumHeight) {
+                            rulings.add(new Ruling(new Point2D.Float(x, y), new Point2D.Float(x, lineY - 1)));
+                        }
+                    }
+                }
+                lastPixel = currPixel;
+            }
+        }
+        return rulings;
+    }
+
+}
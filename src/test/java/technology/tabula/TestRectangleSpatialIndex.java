@@ -2,6 +2,14 @@ package technology.tabula;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.junit.Test;
 
 public class TestRectangleSpatialIndex {
@@ -18,4 +26,113 @@ public class TestRectangleSpatialIndex {
 
 	}
 
+	@Test
+	public void testPackedIndexFindsWhatTreeIndexFindsInReadingOrder() throws IOException {
+		try (PDDocument pdf_document = PDDocument.load(new File("src/test/resources/technology/tabula/us-017.pdf"))) {
+			PDPage pdPage = pdf_document.getPage(0);
+			ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(pdPage);
+			streamEngine.processPage(pdPage);
+			List<TextElement> textElements = new ArrayList<>(streamEngine.getTextElements());
+			List<TextElement> inReadingOrder = new ArrayList<>(textElements);
+			Utils.sort(inReadingOrder, Rectangle.ILL_DEFINED_ORDER);
+
+			RectangleSpatialIndex<TextElement> tree = new RectangleSpatialIndex<>();
+			for (TextElement te : textElements) {
+				tree.add(te);
+			}
+			RectangleSpatialIndex<TextElement> packed = new PackedRectangleSpatialIndex<>(textElements);
+
+			assertEquals(tree.getBounds(), packed.getBounds());
+			for (float top = 0; top < 800; top += 37) {
+				for (float left = 0; left < 600; left += 53) {
+					Rectangle area = new Rectangle(top, left, 120, 45);
+					List<TextElement> expected = new ArrayList<>();
+					for (TextElement te : inReadingOrder) {
+						if (area.contains(te)) {
+							expected.add(te);
+						}
+					}
+					List<TextElement> found = packed.contains(area);
+					assertEquals(expected, found);
+					assertEquals(new HashSet<>(tree.contains(area)), new HashSet<>(found));
+					assertEquals(new HashSet<>(tree.intersects(area)), new HashSet<>(packed.intersects(area)));
+				}
+			}
+			Rectangle page = new Rectangle(0, 0, 1000, 1000);
+			assertEquals(inReadingOrder, packed.contains(page));
+		}
+	}
+
+	@Test
+	public void testContainsEachAreaMatchesSingleQueries() throws IOException {
+		try (PDDocument pdf_document = PDDocument.load(new File("src/test/resources/technology/tabula/spanning_cells.pdf"))) {
+			PDPage pdPage = pdf_document.getPage(0);
+			ObjectExtractorStreamEngine streamEngine = new ObjectExtractorStreamEngine(pdPage);
+			streamEngine.processPage(pdPage);
+			List<TextElement> textElements = new ArrayList<>(streamEngine.getTextElements());
+			RectangleSpatialIndex<TextElement> packed = new PackedRectangleSpatialIndex<>(textElements);
+
+			List<Rectangle> areas = new ArrayList<>();
+			for (float top = 0; top < 800; top += 23) {
+				for (float left = 0; left < 600; left += 41) {
+					areas.add(new Rectangle(top, left, 90, 30));
+				}
+			}
+			areas.add(new Rectangle(0, 0, 1000, 1000));
+			areas.add(new Rectangle(100, 100, 0, 0));
+
+			List<List<TextElement>> found = packed.contains(areas);
+			assertEquals(areas.size(), found.size());
+			for (int i = 0; i < areas.size(); i++) {
+				assertEquals(packed.contains(areas.get(i)), found.get(i));
+			}
+			assertEquals(textElements.size(), found.get(found.size() - 2).size());
+			assertTrue(found.get(found.size() - 1).isEmpty());
+		}
+	}
+
+	@Test
+	public void testAddingToThePageIndex() throws IOException {
+		Page page = UtilsForTesting.getPage("src/test/resources/technology/tabula/us-017.pdf", 1);
+		Rectangle area = new Rectangle(700, 50, 40, 20);
+		List<TextElement> before = page.getText(area);
+
+		TextElement added = new TextElement(705, 55, 10, 10, null, 10, "x", 2.5f);
+		page.getSpatialIndex().add(added);
+
+		List<TextElement> after = page.getText(area);
+		assertEquals(before.size() + 1, after.size());
+		assertTrue(after.contains(added));
+		page.getPDDoc().close();
+	}
+
+	@Test
+	public void testAreaTextKeepsThePageOrder() throws IOException {
+		// pages whose area text came out in a different order when each area was sorted on its own
+		String eu = "src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-eu/";
+		String us = "src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-us/";
+		Object[][] pages = {
+				{ eu + "eu-015.pdf", 2 }, { eu + "eu-017.pdf", 1 }, { eu + "eu-017.pdf", 2 }, { eu + "eu-017.pdf", 3 },
+				{ eu + "eu-018.pdf", 1 }, { eu + "eu-019.pdf", 1 }, { eu + "eu-021.pdf", 8 }, { eu + "eu-022.pdf", 1 },
+				{ eu + "eu-023.pdf", 1 }, { "src/test/resources/technology/tabula/npe_issue_206.pdf", 1 },
+				{ us + "us-001.pdf", 1 }, { us + "us-007.pdf", 4 }, { us + "us-015.pdf", 2 }, { us + "us-020.pdf", 6 },
+				{ us + "us-022.pdf", 3 }, { us + "us-023.pdf", 2 }, { us + "us-023.pdf", 3 }, { us + "us-025.pdf", 4 },
+				{ us + "us-027.pdf", 2 }, { us + "us-029.pdf", 3 }, { us + "us-032.pdf", 1 }, { us + "us-036.pdf", 3 },
+				{ us + "us-040.pdf", 3 } };
+		for (Object[] p : pages) {
+			Page page = UtilsForTesting.getPage((String) p[0], (Integer) p[1]);
+			Rectangle area = new Rectangle(page.getTop() + 50, page.getLeft() + 30,
+					(float) page.getWidth() - 50, (float) page.getHeight() - 90);
+			List<TextElement> expected = new ArrayList<>();
+			for (TextElement te : page.getText()) {
+				if (area.contains(te)) {
+					expected.add(te);
+				}
+			}
+			assertFalse(p[0] + " page " + p[1], expected.isEmpty());
+			assertEquals(p[0] + " page " + p[1], expected, page.getArea(area).getText());
+			page.getPDDoc().close();
+		}
+	}
+
 }
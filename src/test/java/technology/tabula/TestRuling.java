@@ -104,4 +104,48 @@ public class TestRuling {
 
 	}
 
+	@Test
+	public void testFindIntersectionPoints() {
+		java.util.List<Ruling> horizontals = java.util.Arrays.asList(
+				new Ruling(0, 0, 100, 0), new Ruling(50, 0, 100, 0), new Ruling(100, 0, 100, 0));
+		// the last vertical only reaches the middle horizontal
+		java.util.List<Ruling> verticals = java.util.Arrays.asList(
+				new Ruling(0, 0, 0, 100), new Ruling(0, 100, 0, 100), new Ruling(0, 50, 0, 50));
+
+		RulingIntersections points = Ruling.findIntersectionPoints(horizontals, verticals);
+		java.util.Map<java.awt.geom.Point2D, Ruling[]> intersections = Ruling.findIntersections(horizontals, verticals);
+
+		assertEquals(8, points.size());
+		assertEquals(intersections.keySet(), points.toMap().keySet());
+		int i = 0;
+		for (java.util.Map.Entry<java.awt.geom.Point2D, Ruling[]> intersection : intersections.entrySet()) {
+			assertEquals(intersection.getKey().getX(), points.getX(i), 0);
+			assertEquals(intersection.getKey().getY(), points.getY(i), 0);
+			assertEquals(intersection.getValue()[0], points.getHorizontal(i));
+			assertEquals(intersection.getValue()[1], points.getVertical(i));
+			assertEquals(i, points.indexOf(points.getX(i), points.getY(i)));
+			i++;
+		}
+		assertEquals(-1, points.indexOf(50, 100));
+		assertEquals(-1, points.indexOf(25, 0));
+	}
+
+	@Test
+	public void testRulingSetSnapsAndCollapses() {
+		Ruling left = new Ruling(10, 0, 50, 0);
+		Ruling right = new Ruling(10.5f, 50.5f, 49.5f, 0);
+		Ruling vertical = new Ruling(0, 100, 0, 20);
+		java.util.List<Ruling> rulings = new java.util.ArrayList<>(java.util.Arrays.asList(left, right, vertical));
+
+		RulingSet rulingSet = new RulingSet(rulings, 1, 1);
+
+		assertEquals(java.util.Collections.singletonList(left), rulingSet.getHorizontals());
+		assertEquals(java.util.Collections.singletonList(vertical), rulingSet.getVerticals());
+		assertEquals(java.util.Arrays.asList(vertical, left), rulingSet.getRulings());
+		assertEquals(10.25f, left.getTop(), 1e-5);
+		assertEquals(0f, left.getLeft(), 1e-5);
+		assertEquals(100f, left.getRight(), 1e-5);
+		assertTrue(rulingSet.isCollapsed());
+	}
+
 }
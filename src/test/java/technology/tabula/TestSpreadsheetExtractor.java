@@ -135,6 +135,24 @@ public class TestSpreadsheetExtractor {
         assertTrue(cells.equals(expected));
     }
 
+    @Test
+    public void testCellTextKeepsThePageOrder() throws IOException {
+        Page page = UtilsForTesting.getPage(
+                "src/test/resources/technology/tabula/icdar2013-dataset/competition-dataset-eu/eu-015.pdf", 2);
+        List<String> cellTexts = new ArrayList<>();
+        for (Table table : new SpreadsheetExtractionAlgorithm().extract(page)) {
+            for (List<RectangularTextContainer> row : table.getRows()) {
+                for (RectangularTextContainer cell : row) {
+                    cellTexts.add(cell.getText());
+                }
+            }
+        }
+
+        assertTrue(cellTexts.contains(
+                "Free movement of persons /\rworkersUnspecified\r14%\rnon-EU\r8%\rTotal EU-15Total EU-12\r65%13%"));
+        page.getPDDoc().close();
+    }
+
     @Test
     public void testDetectSingleCell() {
         List<Cell> cells = SpreadsheetExtractionAlgorithm.findCells(Arrays.asList(SINGLE_CELL_RULINGS[0]),
@@ -156,6 +174,32 @@ public class TestSpreadsheetExtractor {
         assertFalse(cells.get(0).intersects(cells.get(1)));
     }
 
+    @Test
+    public void testDetectCellsOfDenseGrid() {
+        List<Ruling> horizontals = new ArrayList<>();
+        List<Ruling> verticals = new ArrayList<>();
+        for (int i = 0; i <= 60; i++) {
+            horizontals.add(new Ruling(new Point2D.Float(10f, 10f + i * 7.5f), new Point2D.Float(310f, 10f + i * 7.5f)));
+        }
+        for (int i = 0; i <= 60; i++) {
+            // the middle vertical stops halfway, so the cells next to it span two columns in the lower half
+            float bottom = i == 30 ? 235f : 460f;
+            verticals.add(new Ruling(new Point2D.Float(10f + i * 5f, 10f), new Point2D.Float(10f + i * 5f, bottom)));
+        }
+
+        List<Cell> cells = SpreadsheetExtractionAlgorithm.findCells(horizontals, verticals);
+
+        assertEquals(60 * 60 - 30, cells.size());
+        Cell first = cells.get(0);
+        assertTrue(Utils.feq(10f, first.getLeft()));
+        assertTrue(Utils.feq(10f, first.getTop()));
+        assertTrue(Utils.feq(5f, first.getWidth()));
+        assertTrue(Utils.feq(7.5f, first.getHeight()));
+        for (Cell cell : cells) {
+            assertTrue(Utils.feq(5f, cell.getWidth()) || (Utils.feq(10f, cell.getWidth()) && cell.getTop() >= 235f));
+        }
+    }
+
     @Test
     public void testFindSpreadsheetsFromCells() throws IOException {
 
@@ -7,10 +7,12 @@ import static org.junit.Assert.assertNull;
 import java.awt.geom.Point2D;
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.commons.cli.ParseException;
@@ -54,6 +56,33 @@ public class TestUtils {
         assertEquals(r, shapes.get(0));
     }
 
+    @Test
+    public void testRoundHalfUpOnDecimalRepresentation() {
+        assertEquals(1.01f, Utils.round(1.005, 2), 0);
+        assertEquals(2.68f, Utils.round(2.675, 2), 0);
+        assertEquals(-2.68f, Utils.round(-2.675, 2), 0);
+        assertEquals(0.13f, Utils.round(0.125, 2), 0);
+        assertEquals(12.35f, Utils.round(12.345f, 2), 0);
+        assertEquals(0f, Utils.round(-0.004, 2), 0);
+        assertEquals(123456.79f, Utils.round(123456.785, 2), 0);
+    }
+
+    @Test
+    public void testRoundMatchesBigDecimalRounding() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            double d = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(8));
+            float f = (float) d;
+            assertEquals(new BigDecimal(Double.toString(d)).setScale(2, BigDecimal.ROUND_HALF_UP).floatValue(), Utils.round(d, 2), 0);
+            assertEquals(new BigDecimal(Double.toString(f)).setScale(2, BigDecimal.ROUND_HALF_UP).floatValue(), Utils.round(f, 2), 0);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testRoundNaN() {
+        Utils.round(Double.NaN, 2);
+    }
+
     @Test
     public void testParsePagesOption() throws ParseException {
 
@@ -1,6 +1,7 @@
 package technology.tabula;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.IOException;
 import java.util.List;
@@ -15,6 +16,8 @@ import technology.tabula.extractors.SpreadsheetExtractionAlgorithm;
 import technology.tabula.writers.CSVWriter;
 import technology.tabula.writers.JSONWriter;
 import technology.tabula.writers.TSVWriter;
+import technology.tabula.writers.TableAppender;
+import technology.tabula.writers.Writer;
 
 public class TestWriters {
 
@@ -120,6 +123,33 @@ public class TestWriters {
         assertEquals(expectedCsv, s);
     }
 
+    @Test
+    public void testWritersAppendTablesIncrementally() throws IOException {
+        List<Table> tables = this.getTables();
+        Writer[] writers = { new CSVWriter(), new TSVWriter(), new JSONWriter() };
+
+        for (Writer writer : writers) {
+            StringBuilder expected = new StringBuilder();
+            writer.write(expected, tables);
+
+            StringBuilder sb = new StringBuilder();
+            try (TableAppender appender = writer.open(sb)) {
+                appender.append(tables.get(0));
+                // the first table is available before the output is complete
+                assertFalse(sb.length() == 0);
+                appender.append(tables.get(1));
+            }
+            assertEquals(expected.toString(), sb.toString());
+        }
+    }
+
+    @Test
+    public void testJSONWriterAppendsNoTables() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        (new JSONWriter()).open(sb).close();
+        assertEquals("[]", sb.toString());
+    }
+
     @Test
     public void testCSVMultilineRow() throws IOException {
         String expectedCsv = UtilsForTesting.loadCsv("src/test/resources/technology/tabula/csv/frx_2012_disclosure.csv");